@@ -0,0 +1,72 @@
+package benchmark;
+
+import logic.PosePostProcessor;
+
+import java.lang.management.ManagementFactory;
+import java.nio.FloatBuffer;
+import java.util.concurrent.ForkJoinPool;
+
+// Measures the heap allocated by PosePostProcessor.process() once it has reached steady state, with the
+// per-thread allocation counter of the HotSpot ThreadMXBean. The serial path must not allocate at all, the program
+// exits with 1 when it does. The parallel path is only reported: ForkJoinPool.invoke() allocates a few dozen bytes per
+// stage on the caller's side while it waits for the workers, which the post-processor can't avoid.
+// usage: AllocationCheck [frames]
+public class AllocationCheck
+{
+    private static final int[] People = {0, 1, 5, 30};
+    private static final int WarmUpFrames = 5000;
+    private static final int Windows = 3;
+
+    public static void main(String[] args)
+    {
+        int frames = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threads.isThreadAllocatedMemorySupported()) {
+            System.err.println("this JVM doesn't count allocated bytes per thread");
+            System.exit(1);
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+        // the first query initializes the counter's own state on this thread, keep that out of the measurements
+        threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+
+        boolean allocating = false;
+        ForkJoinPool pool = new ForkJoinPool(Math.max(2, Runtime.getRuntime().availableProcessors() / 2));
+        for (int people : People) {
+            FloatBuffer tensor = FloatBuffer.wrap(SyntheticPoses.tensor(64, 36, people, 42));
+            PosePostProcessor postProcessor = new PosePostProcessor(64, 36);
+
+            double serial = bytesPerFrame(threads, postProcessor, tensor, frames);
+            postProcessor.setPool(pool);
+            double parallel = bytesPerFrame(threads, postProcessor, tensor, frames);
+            System.out.println(String.format("%2d people: serial %.1f B/frame, parallel %.1f B/frame on the calling thread",
+                    people, serial, parallel));
+            allocating |= serial > 0;
+        }
+        pool.shutdown();
+        if (allocating) {
+            System.err.println("the serial post-processing allocates in steady state");
+            System.exit(1);
+        }
+    }
+
+    // Warms up first so the buffers have grown to the frame and the JIT has reached its final tier, then takes the
+    // quietest of a few windows: a deoptimization inside a window materializes the objects compiled code had scalar
+    // replaced and shows up as a one-off of a few hundred bytes that isn't steady-state allocation.
+    private static double bytesPerFrame(com.sun.management.ThreadMXBean threads, PosePostProcessor postProcessor,
+                                        FloatBuffer tensor, int frames)
+    {
+        for (int i = 0; i < WarmUpFrames; i++) {
+            postProcessor.process(tensor);
+        }
+        long thread = Thread.currentThread().getId();
+        long least = Long.MAX_VALUE;
+        for (int window = 0; window < Windows; window++) {
+            long before = threads.getThreadAllocatedBytes(thread);
+            for (int i = 0; i < frames; i++) {
+                postProcessor.process(tensor);
+            }
+            least = Math.min(least, threads.getThreadAllocatedBytes(thread) - before);
+        }
+        return (double) least / frames;
+    }
+}
@@ -0,0 +1,77 @@
+package benchmark;
+
+import logic.Human;
+import logic.PosePostProcessor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.FloatBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// how the post-processing grows with the number of people, on synthetic 1280x720 network output (160x90 maps);
+// divide the scores by the person count to see whether a stage scales linearly
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CrowdScalingBenchmark
+{
+    @Param({"10", "30", "60", "120"})
+    public int people;
+
+    @Param({"160"})
+    public int mapWidth;
+
+    @Param({"90"})
+    public int mapHeight;
+
+    // 0 keeps the post-processor's default of no limit
+    @Param({"0", "12"})
+    public float maxLimbLength;
+
+    private FloatBuffer tensor;
+    private PosePostProcessor postProcessor;
+
+    @Setup
+    public void setUp()
+    {
+        tensor = FloatBuffer.wrap(SyntheticPoses.tensor(mapWidth, mapHeight, people, 42));
+        postProcessor = new PosePostProcessor(mapWidth, mapHeight);
+        if (maxLimbLength > 0) {
+            postProcessor.setMaxLimbLength(maxLimbLength);
+        }
+
+        // leave the peaks and pairs of the frame in place for the stage benchmarks below
+        postProcessor.process(tensor);
+    }
+
+    @Benchmark
+    public void pafPairScoring()
+    {
+        postProcessor.scorePairs();
+    }
+
+    @Benchmark
+    public List<Human> humanAssembly()
+    {
+        return postProcessor.assembleHumans();
+    }
+
+    @Benchmark
+    public List<Human> fullPostProcessing()
+    {
+        return postProcessor.process(tensor);
+    }
+}
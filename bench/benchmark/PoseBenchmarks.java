@@ -0,0 +1,25 @@
+package benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+// runs the whole suite and writes the JMH results as JSON, so releases can be compared
+// usage: PoseBenchmarks [result file, default bench-results.json] [benchmark regex, default all]
+public class PoseBenchmarks
+{
+    public static void main(String[] args) throws RunnerException
+    {
+        String resultFile = args.length > 0 ? args[0] : "bench-results.json";
+        String include = args.length > 1 ? args[1] : "benchmark\\..*Benchmark.*";
+
+        Options options = new OptionsBuilder()
+                .include(include)
+                .resultFormat(ResultFormatType.JSON)
+                .result(resultFile)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,85 @@
+package benchmark;
+
+import logic.HeatmapNms;
+import logic.Human;
+import logic.PosePostProcessor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.FloatBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// every stage after fetch(), on synthetic 512x288 network output (64x36 maps)
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PostProcessingBenchmark
+{
+    @Param({"0", "1", "5", "30"})
+    public int people;
+
+    @Param({"64"})
+    public int mapWidth;
+
+    @Param({"36"})
+    public int mapHeight;
+
+    private FloatBuffer tensor;
+    private PosePostProcessor postProcessor;
+    private HeatmapNms nms;
+    private int[] peaks;
+
+    @Setup
+    public void setUp()
+    {
+        tensor = FloatBuffer.wrap(SyntheticPoses.tensor(mapWidth, mapHeight, people, 42));
+        postProcessor = new PosePostProcessor(mapWidth, mapHeight);
+        nms = new HeatmapNms(mapWidth, mapHeight, SyntheticPoses.ChannelCount, 18, 5, 0.15f);
+        peaks = new int[nms.capacity()];
+
+        // leave the peaks and pairs of the frame in place for the stage benchmarks below
+        postProcessor.process(tensor);
+    }
+
+    @Benchmark
+    public int heatmapNms()
+    {
+        nms.loadHeatmaps(tensor, 0);
+        int count = 0;
+        for (int part = 0; part < 18; part++) {
+            count += nms.findPeaks(part, peaks);
+        }
+        return count;
+    }
+
+    @Benchmark
+    public void pafPairScoring()
+    {
+        postProcessor.scorePairs();
+    }
+
+    @Benchmark
+    public List<Human> humanAssembly()
+    {
+        return postProcessor.assembleHumans();
+    }
+
+    @Benchmark
+    public List<Human> fullPostProcessing()
+    {
+        return postProcessor.process(tensor);
+    }
+}
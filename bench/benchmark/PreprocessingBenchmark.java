@@ -0,0 +1,108 @@
+package benchmark;
+
+import logic.Camera;
+import logic.InputConverter;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// frame -> network input conversions (the body of PoseDetector.setImage) and the display copy, needs the OpenCV natives
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PreprocessingBenchmark
+{
+    @Param({"512"})
+    public int width;
+
+    @Param({"288"})
+    public int height;
+
+    @Param({"BGR", "RGB"})
+    public String colorChannels;
+
+    private InputConverter converter;
+    private FloatBuffer input;
+    private int[] pixels;
+    private ByteBuffer bytes;
+    private Mat frame;
+    private BufferedImage image;
+
+    @Setup
+    public void setUp()
+    {
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+
+        Random random = new Random(42);
+        byte[] data = new byte[width * height * 3];
+        random.nextBytes(data);
+        pixels = new int[width * height];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = random.nextInt() & 0xFFFFFF;
+        }
+        bytes = ByteBuffer.allocateDirect(data.length);
+        bytes.put(data);
+        bytes.flip();
+        frame = new Mat(height, width, CvType.CV_8UC3);
+        frame.put(0, 0, data);
+        image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+
+        converter = new InputConverter(colorChannels, width, height);
+        input = ByteBuffer.allocateDirect(width * height * 3 * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+    }
+
+    @Benchmark
+    public FloatBuffer setImageIntPixels()
+    {
+        converter.convert(pixels, input);
+        return input;
+    }
+
+    @Benchmark
+    public FloatBuffer setImageMat()
+    {
+        converter.convert(frame, input);
+        return input;
+    }
+
+    @Benchmark
+    public FloatBuffer setImageByteBuffer()
+    {
+        converter.convert(bytes, input);
+        return input;
+    }
+
+    @Benchmark
+    public BufferedImage matToBufferedImage()
+    {
+        return Camera.matToBufferedImage(frame);
+    }
+
+    @Benchmark
+    public BufferedImage matToReusedBufferedImage()
+    {
+        Camera.matToBufferedImage(frame, image);
+        return image;
+    }
+}
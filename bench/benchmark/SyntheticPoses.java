@@ -0,0 +1,82 @@
+package benchmark;
+
+import logic.PosePostProcessor;
+
+import java.util.Random;
+
+import static logic.PoseDetector.CocoPairs;
+
+// deterministic stand-in for the network output: gaussian part peaks and unit PAF vectors along every limb
+public class SyntheticPoses
+{
+    public static final int ChannelCount = 57;
+    private static final int HeatMapCount = 19;
+
+    // part offsets (row, column) from the hip center of a standing person, in map cells
+    private static final int[][] Skeleton = {{-5, 0}, {-4, 0}, {-4, -2}, {-2, -3}, {0, -3}, {-4, 2}, {-2, 3}, {0, 3},
+            {0, -1}, {2, -1}, {4, -1}, {0, 1}, {2, 1}, {4, 1}, {-6, -1}, {-6, 1}, {-5, -2}, {-5, 2}};
+
+    public static float[] tensor(int mapWidth, int mapHeight, int people, long seed)
+    {
+        Random random = new Random(seed);
+        float[] tensor = new float[mapWidth * mapHeight * ChannelCount];
+        for (int i = 0; i < tensor.length; i++) {
+            tensor[i] = random.nextFloat() * 0.05f;
+        }
+
+        for (int person = 0; person < people; person++) {
+            int centerRow = 6 + random.nextInt(Math.max(1, mapHeight - 11));
+            int centerColumn = 3 + random.nextInt(Math.max(1, mapWidth - 7));
+            int[][] parts = new int[Skeleton.length][2];
+            for (int part = 0; part < Skeleton.length; part++) {
+                parts[part][0] = clamp(centerRow + Skeleton[part][0], mapHeight);
+                parts[part][1] = clamp(centerColumn + Skeleton[part][1], mapWidth);
+                addPeak(tensor, mapWidth, mapHeight, part, parts[part][0], parts[part][1], 0.6f + 0.3f * random.nextFloat());
+            }
+            for (int limb = 0; limb < CocoPairs.length; limb++) {
+                addLimb(tensor, mapWidth, parts[CocoPairs[limb][0]], parts[CocoPairs[limb][1]], PosePostProcessor.CocoPairsNetwork[limb]);
+            }
+        }
+        return tensor;
+    }
+
+    private static void addPeak(float[] tensor, int mapWidth, int mapHeight, int part, int row, int column, float peak)
+    {
+        for (int dr = -2; dr <= 2; dr++) {
+            for (int dc = -2; dc <= 2; dc++) {
+                int r = row + dr;
+                int c = column + dc;
+                if (r < 0 || c < 0 || r >= mapHeight || c >= mapWidth) {
+                    continue;
+                }
+                float value = peak * (float) Math.exp(-(dr * dr + dc * dc) / 2.0);
+                int index = (r * mapWidth + c) * ChannelCount + part;
+                tensor[index] = Math.max(tensor[index], value);
+            }
+        }
+    }
+
+    // the post-processor projects (row, column) limb directions as column * channels[0] + row * channels[1]
+    private static void addLimb(float[] tensor, int mapWidth, int[] from, int[] to, int[] channels)
+    {
+        float dr = to[0] - from[0];
+        float dc = to[1] - from[1];
+        float length = (float) Math.sqrt(dr * dr + dc * dc);
+        if (length < 0.0001f) {
+            return;
+        }
+        int steps = (int) Math.ceil(length * 2);
+        for (int s = 0; s <= steps; s++) {
+            int r = Math.round(from[0] + dr * s / steps);
+            int c = Math.round(from[1] + dc * s / steps);
+            int base = (r * mapWidth + c) * ChannelCount + HeatMapCount;
+            tensor[base + channels[0]] = dc / length;
+            tensor[base + channels[1]] = dr / length;
+        }
+    }
+
+    private static int clamp(int value, int size)
+    {
+        return Math.max(0, Math.min(size - 1, value));
+    }
+}
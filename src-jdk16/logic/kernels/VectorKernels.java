@@ -0,0 +1,140 @@
+package logic.kernels;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+// jdk.incubator.vector versions of the kernels, JDK 16 or newer with --add-modules jdk.incubator.vector. Compiled
+// from the src-jdk16 source root next to the Java 8 sources and only ever loaded reflectively by Kernels. Every loop
+// leaves the remainder that doesn't fill a vector to ScalarKernels. Maxima are taken with compare + blend instead of
+// max(), which keeps the "value > max" semantics of the scalar loops for -0.0 and NaN.
+public class VectorKernels implements PoseKernels
+{
+    private static final VectorSpecies<Float> Floats = FloatVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> Ints = IntVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Byte> Bytes = ByteVector.SPECIES_PREFERRED;
+
+    private final ScalarKernels scalar = new ScalarKernels();
+    // lane i of a pixel vector goes to element i * 3 of the interleaved target
+    private final int[] interleave = new int[Floats.length()];
+
+    public VectorKernels()
+    {
+        if (Ints.length() != Floats.length()) {
+            throw new IllegalStateException("Int and float vectors of different lane counts");
+        }
+        for (int i = 0; i < interleave.length; i++) {
+            interleave[i] = i * 3;
+        }
+    }
+
+    @Override
+    public void unpackPixels(int[] pixels, int count, int[] channels, float[] target)
+    {
+        int i = 0;
+        for (; i + Ints.length() <= count; i += Ints.length()) {
+            IntVector pixel = IntVector.fromArray(Ints, pixels, i);
+            toFloats(pixel.lanewise(VectorOperators.ASHR, 16).lanewise(VectorOperators.AND, 0xFF))
+                    .intoArray(target, i * 3 + channels[0], interleave, 0);
+            toFloats(pixel.lanewise(VectorOperators.ASHR, 8).lanewise(VectorOperators.AND, 0xFF))
+                    .intoArray(target, i * 3 + channels[1], interleave, 0);
+            toFloats(pixel.lanewise(VectorOperators.AND, 0xFF))
+                    .intoArray(target, i * 3 + channels[2], interleave, 0);
+        }
+        for (; i < count; ++i) {
+            final int val = pixels[i];
+            target[i * 3 + channels[0]] = (val >> 16) & 0xFF;
+            target[i * 3 + channels[1]] = (val >> 8) & 0xFF;
+            target[i * 3 + channels[2]] = val & 0xFF;
+        }
+    }
+
+    // only the identity channel order is a plain widening, any other order takes the scalar loop
+    @Override
+    public void unpackBytes(byte[] bytes, int length, int[] channels, float[] target)
+    {
+        if (channels[0] != 0 || channels[1] != 1 || channels[2] != 2) {
+            scalar.unpackBytes(bytes, length, channels, target);
+            return;
+        }
+        int parts = Bytes.length() / Ints.length();
+        int i = 0;
+        for (; i + Bytes.length() <= length; i += Bytes.length()) {
+            ByteVector chunk = ByteVector.fromArray(Bytes, bytes, i);
+            for (int part = 0; part < parts; part++) {
+                IntVector widened = (IntVector) chunk.convertShape(VectorOperators.B2I, Ints, part);
+                toFloats(widened.lanewise(VectorOperators.AND, 0xFF)).intoArray(target, i + part * Ints.length());
+            }
+        }
+        for (; i < length; i++) {
+            target[i] = bytes[i] & 0xFF;
+        }
+    }
+
+    @Override
+    public void windowMax(float[] src, int offset, int from, int to, int before, int after, int width, float[] target)
+    {
+        // windows that are not clipped by the right edge
+        int end = Math.min(to, width - after);
+        int k = from;
+        for (; k + Floats.length() <= end; k += Floats.length()) {
+            FloatVector max = FloatVector.zero(Floats);
+            for (int d = -before; d <= after; d++) {
+                FloatVector value = FloatVector.fromArray(Floats, src, offset + k + d);
+                max = max.blend(value, value.compare(VectorOperators.GT, max));
+            }
+            max.intoArray(target, offset + k);
+        }
+        scalar.windowMax(src, offset, k, to, before, after, width, target);
+    }
+
+    @Override
+    public void maxInto(float[] max, float[] src, int offset, int from, int to)
+    {
+        int k = from;
+        for (; k + Floats.length() <= to; k += Floats.length()) {
+            FloatVector current = FloatVector.fromArray(Floats, max, k);
+            FloatVector value = FloatVector.fromArray(Floats, src, offset + k);
+            current.blend(value, value.compare(VectorOperators.GT, current)).intoArray(max, k);
+        }
+        scalar.maxInto(max, src, offset, k, to);
+    }
+
+    @Override
+    public int collectPeaks(float[] max, float[] plane, int offset, int from, int to, float threshold, int row, int[] peaks, int count)
+    {
+        int k = from;
+        for (; k + Floats.length() <= to; k += Floats.length()) {
+            FloatVector windowMax = FloatVector.fromArray(Floats, max, k);
+            VectorMask<Float> isPeak = windowMax.compare(VectorOperators.GT, threshold)
+                    .and(windowMax.compare(VectorOperators.EQ, FloatVector.fromArray(Floats, plane, offset + k)));
+            for (long lanes = isPeak.toLong(); lanes != 0; lanes &= lanes - 1) {
+                peaks[count++] = (row << 16) | (k + Long.numberOfTrailingZeros(lanes));
+            }
+        }
+        return scalar.collectPeaks(max, plane, offset, k, to, threshold, row, peaks, count);
+    }
+
+    @Override
+    public void project(float[] x, float[] y, float vy, float vx, float[] out, int count)
+    {
+        int t = 0;
+        for (; t + Floats.length() <= count; t += Floats.length()) {
+            FloatVector.fromArray(Floats, x, t).mul(vy)
+                    .add(FloatVector.fromArray(Floats, y, t).mul(vx))
+                    .intoArray(out, t);
+        }
+        for (; t < count; t++) {
+            out[t] = vy * x[t];
+            out[t] += vx * y[t];
+        }
+    }
+
+    private static FloatVector toFloats(IntVector values)
+    {
+        return (FloatVector) values.convert(VectorOperators.I2F, 0);
+    }
+}
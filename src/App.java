@@ -4,7 +4,6 @@ import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
 import javafx.scene.layout.Pane;
 import javafx.stage.Stage;
-import org.opencv.core.Core;
 
 import java.io.IOException;
 
@@ -12,9 +11,7 @@ public class App extends Application
 {
     public static void main(String[] args)
     {
-        // load the native OpenCV library
-        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
-
+        // the OpenCV and TensorFlow natives are loaded in the background by MainSceneController.init
         launch(args);
     }
 
@@ -0,0 +1,163 @@
+package gui;
+
+import javafx.application.Platform;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.image.WritablePixelFormat;
+import javafx.scene.paint.Color;
+import logic.Human;
+import logic.PoseDetector;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.imgproc.Imgproc;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Shows the camera frames in an ImageView and the skeletons on a Canvas laid over it. submit() runs on the caller's
+// thread and only converts the frame into one of two BGRA buffers and copies the keypoints, the FX thread then
+// writes the pixels into the matching one of two WritableImages and swaps it in. At most one swap is queued with
+// Platform.runLater: while it is pending new frames are skipped instead of waiting, so the caller never blocks.
+// Nothing is allocated per frame once the keypoint buffers have grown to the largest crowd seen.
+public class FrameRenderer
+{
+    private final int PartCount = 18;
+
+    private final ImageView view;
+    private final GraphicsContext overlay;
+    private final Canvas canvas;
+    private final int width;
+    private final int height;
+    private final int stride;
+    private final double scale;
+    private final WritablePixelFormat<ByteBuffer> format = PixelFormat.getByteBgraInstance();
+
+    private final Mat bgra = new Mat();
+    private final WritableImage[] images = new WritableImage[2];
+    private final byte[][] pixels = new byte[2][];
+    // per buffer: humans * PartCount (row, column) pairs in heatmap cells, -1 for parts that weren't found
+    private final int[][] keypoints = new int[2][];
+    private final int[] humanCount = new int[2];
+
+    private final AtomicBoolean swapPending = new AtomicBoolean();
+    private final Runnable swap = this::swap;
+    private int back;
+    private volatile int ready;
+    private long skippedFrames;
+    // the fps label is only rebuilt once a second, the FX thread reads whatever string is current
+    private volatile String fpsText = "";
+    private long fpsWindowStart;
+    private int fpsFrames;
+
+    // width and height are the frame size, the canvas is sized to the view's fit width and scaled to match; stride is
+    // the model's input pixels per heatmap cell
+    public FrameRenderer(ImageView view, Canvas canvas, int width, int height, int stride)
+    {
+        this.view = view;
+        this.canvas = canvas;
+        this.overlay = canvas.getGraphicsContext2D();
+        this.width = width;
+        this.height = height;
+        this.stride = stride;
+        this.scale = view.getFitWidth() > 0 ? view.getFitWidth() / width : 1.0;
+        canvas.setWidth(width * scale);
+        canvas.setHeight(height * scale);
+        for (int i = 0; i < 2; i++) {
+            images[i] = new WritableImage(width, height);
+            pixels[i] = new byte[width * height * 4];
+            keypoints[i] = new int[PartCount * 2 * 8];
+        }
+    }
+
+    // the frame is an 8 bit BGR Mat of the renderer's size; returns false when the frame was skipped
+    public boolean submit(Mat bgrFrame, List<Human> humans)
+    {
+        long now = System.nanoTime();
+        fpsFrames++;
+        if (now - fpsWindowStart >= 1000000000L) {
+            fpsText = fpsWindowStart == 0 ? "" : Math.round(fpsFrames * 1e10 / (now - fpsWindowStart)) / 10.0 + " fps";
+            fpsWindowStart = now;
+            fpsFrames = 0;
+        }
+        if (swapPending.get()) {
+            skippedFrames++;
+            return false;
+        }
+
+        if (bgrFrame.width() != width || bgrFrame.height() != height || bgrFrame.type() != CvType.CV_8UC3) {
+            System.err.println("frame doesn't match the renderer (" + width + "x" + height + " BGR)");
+            return false;
+        }
+        Imgproc.cvtColor(bgrFrame, bgra, Imgproc.COLOR_BGR2BGRA);
+        bgra.get(0, 0, pixels[back]);
+
+        if (keypoints[back].length < humans.size() * PartCount * 2) {
+            keypoints[back] = Arrays.copyOf(keypoints[back], humans.size() * PartCount * 4);
+        }
+        int[] points = keypoints[back];
+        for (int h = 0; h < humans.size(); h++) {
+            Human human = humans.get(h);
+            for (int part = 0; part < PartCount; part++) {
+                int i = (h * PartCount + part) * 2;
+                boolean found = human.parts_coords[part][0] != 0 && human.parts_coords[part][1] != 0;
+                points[i] = found ? human.parts_coords[part][0] : -1;
+                points[i + 1] = found ? human.parts_coords[part][1] : -1;
+            }
+        }
+        humanCount[back] = humans.size();
+
+        ready = back;
+        back = 1 - back;
+        swapPending.set(true);
+        Platform.runLater(swap);
+        return true;
+    }
+
+    // frames not shown because the FX thread was still busy with the previous one
+    public long getSkippedFrames()
+    {
+        return skippedFrames;
+    }
+
+    private void swap()
+    {
+        int index = ready;
+        images[index].getPixelWriter().setPixels(0, 0, width, height, format, pixels[index], 0, width * 4);
+        view.setImage(images[index]);
+        drawSkeletons(keypoints[index], humanCount[index]);
+        swapPending.set(false);
+    }
+
+    // same look as the former AWT overlay: a circle per part and a line per limb, both in green
+    private void drawSkeletons(int[] points, int humans)
+    {
+        overlay.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+        overlay.setStroke(Color.LIME);
+        overlay.setLineWidth(2);
+        int[][] pairs = PoseDetector.CocoPairs;
+        double cell = stride * scale;
+        for (int h = 0; h < humans; h++) {
+            int base = h * PartCount * 2;
+            for (int part = 0; part < PartCount; part++) {
+                if (points[base + part * 2] < 0) {
+                    continue;
+                }
+                double x = points[base + part * 2 + 1] * cell;
+                double y = points[base + part * 2] * cell;
+                overlay.strokeOval(x, y, 6, 6);
+                for (int[] pair : pairs) {
+                    if (pair[0] == part && points[base + pair[1] * 2] >= 0) {
+                        overlay.strokeLine(x, y, points[base + pair[1] * 2 + 1] * cell, points[base + pair[1] * 2] * cell);
+                    }
+                }
+            }
+        }
+        overlay.setFill(Color.LIME);
+        overlay.fillText(fpsText, 20, 20);
+    }
+}
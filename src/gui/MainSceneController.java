@@ -1,43 +1,58 @@
 package gui;
 
-import javafx.embed.swing.SwingFXUtils;
+import javafx.application.Platform;
 import javafx.fxml.FXML;
+import javafx.scene.canvas.Canvas;
 import javafx.scene.control.Button;
-import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import logic.Camera;
-import logic.Human;
+import logic.MotionGate;
 import logic.PoseDetector;
+import logic.PoseStartup;
+import logic.metrics.PoseMetrics;
+import logic.pipeline.FramePipeline;
 
-import java.awt.*;
-import java.awt.geom.Line2D;
-import java.awt.image.BufferedImage;
-import java.awt.image.DataBufferInt;
-import java.util.List;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.nio.file.Paths;
 
 public class MainSceneController
 {
     @FXML
     private ImageView frame;
 
+    @FXML
+    private Canvas overlay;
+
     @FXML
     private Button btnStart;
 
     private Camera camera;
     private PoseDetector detector;
-    private ScheduledExecutorService timer;
+    private FramePipeline pipeline;
+    private FrameRenderer renderer;
     private boolean cameraActive;
-    private long time = System.currentTimeMillis();
 
     private final int inWidth = 512;
     private final int inHeight = 288;
+    private final int WarmUpRuns = 2;
 
+    // returns right away, the start button is enabled once the model, the natives and the camera are ready
     public void init()
     {
-        detector = new PoseDetector("BGR", inWidth, inHeight);
+        // stage timings and counters, readable with JConsole / VisualVM while the camera runs
+        PoseMetrics.register();
+
+        btnStart.setDisable(true);
+        new PoseStartup(Paths.get(PoseDetector.MODEL_FILE), "BGR", inWidth, inHeight, 1920, 1080, 0, WarmUpRuns)
+                .start()
+                .whenComplete((startup, error) -> Platform.runLater(() -> {
+                    if (error != null) {
+                        System.err.println("Startup failed: " + error);
+                        return;
+                    }
+                    detector = startup.getDetector();
+                    camera = startup.getCamera();
+                    btnStart.setDisable(false);
+                }));
     }
 
     @FXML
@@ -45,29 +60,26 @@ public class MainSceneController
     {
         if (!this.cameraActive)
         {
-
-            camera = new Camera(1920, 1080, 0);
+            // the camera opened during startup is used for the first start, later starts reopen it
+            if (camera == null || !camera.getVideoCapture().isOpened()) {
+                camera = new Camera(1920, 1080, 0);
+            }
 
             if (camera.getVideoCapture().isOpened())
             {
                 this.cameraActive = true;
 
-                // grab a frame every minimum 33 ms (max 30 frames/sec)
-                Runnable frameGrabber = () -> {
-
-                    BufferedImage imgOriginal = camera.getFrame(inWidth, inHeight);
-                    int[] intValues = getImageData(imgOriginal);
-                    detector.setImage(intValues);
-
-                    long time1 = System.currentTimeMillis();
-                    List<Human> recognitions = detector.recognizePoses();
-                    System.out.println("processing took " + (System.currentTimeMillis() - time1) + " ms");
-
-                    displayResults(imgOriginal, recognitions);
-                };
-
-                this.timer = Executors.newSingleThreadScheduledExecutor();
-                this.timer.scheduleAtFixedRate(frameGrabber, 0, 33, TimeUnit.MILLISECONDS);
+                // capture, preprocessing, inference, post-processing and rendering overlap on their own threads, the
+                // renderer hands the pixels over to the FX thread without waiting for it
+                if (this.renderer == null) {
+                    this.renderer = new FrameRenderer(frame, overlay, inWidth, inHeight,
+                            detector.getModel().getStride());
+                }
+                this.pipeline = new FramePipeline(camera, detector, inWidth, inHeight,
+                        frame -> renderer.submit(frame.mat, frame.humans));
+                // static scenes reuse the last poses, at most one second at 30 fps
+                this.pipeline.setMotionGate(new MotionGate(6.0f, 30));
+                this.pipeline.start();
 
                 this.btnStart.setText("Stop");
             }
@@ -79,83 +91,23 @@ public class MainSceneController
         else
         {
             this.cameraActive = false;
-            camera.stop();
             this.btnStart.setText("Start");
+            // stops the capture thread before the camera is released
             this.stopAcquisition();
         }
     }
 
-    private int[] getImageData(BufferedImage image)
-    {
-        BufferedImage imgToRecognition = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_BGR);
-        imgToRecognition.getGraphics().drawImage(image, 0, 0, null);
-        int[] data = ((DataBufferInt) imgToRecognition.getRaster().getDataBuffer()).getData();
-        return data;
-    }
-
-    private void displayResults(BufferedImage imgOriginal, List<Human> recognitions)
+    public void stopAcquisition()
     {
-        Graphics2D canvas = imgOriginal.createGraphics();
-        long dTime = System.currentTimeMillis() - time;
-        System.out.println("whole cycle took " + dTime);
-        time = System.currentTimeMillis();
-
-        Stroke stroke = canvas.getStroke();
-        canvas.setStroke(new BasicStroke(2));
-        canvas.setColor(Color.green);
-
-        int[][] pairs = PoseDetector.CocoPairs;
-
-        for (Human human : recognitions)
+        if (this.pipeline != null)
         {
-            for (int i = 0; i < 18; i++)
-            {
-                int x = human.parts_coords[i][1] * 8;
-                int y = human.parts_coords[i][0] * 8;
-
-                if (x != 0 && y !=0)
-                {
-                    canvas.drawOval(x, y, 6, 6);
-//                    canvas.drawString(Human.parts.get(i), x - 4, y - 4);
-
-                    for (int j = 0; j < pairs.length; j++)
-                    {
-                        if (pairs[j][0] == i)
-                        {
-                            int v = human.parts_coords[pairs[j][1]][1] * 8;
-                            int w = human.parts_coords[pairs[j][1]][0] * 8;
-                            if (v != 0 && w != 0)
-                            {
-                                canvas.draw(new Line2D.Double(x, y, v, w));
-                            }
-                        }
-                    }
-                }
-            }
+            // stop the pipeline stages
+            this.pipeline.stop();
+            this.pipeline = null;
         }
-        canvas.setStroke(stroke);
-        double fps = Math.round(10000.0 / dTime) / 10.0;
-        canvas.drawString(fps + " fps", 20, 20);
-
-        Image im = SwingFXUtils.toFXImage(imgOriginal, null);
-        frame.setImage(im);
-    }
-
-    public void stopAcquisition()
-    {
-        if (this.timer != null && !this.timer.isShutdown())
+        if (camera != null)
         {
-            try
-            {
-                // stop the timer
-                this.timer.shutdown();
-                this.timer.awaitTermination(33, TimeUnit.MILLISECONDS);
-            } catch (InterruptedException e)
-            {
-                // log any exception
-                System.err.println("Exception in stopping the frame capture, trying to release the camera now... " + e);
-            }
+            camera.stop();
         }
-        camera.stop();
     }
 }
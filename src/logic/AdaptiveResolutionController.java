@@ -0,0 +1,188 @@
+package logic;
+
+import logic.model.ModelDescriptor;
+import logic.tensorflow.TensorFlowInferenceInterface;
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+import org.tensorflow.Graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Holds one detector per input resolution, all on a single imported graph, and picks the resolution per frame so
+// that the rolling p95 of the detection time stays within the latency budget. It steps down as soon as the p95 is
+// over budget and only steps up when the larger resolution, scaled by its pixel count, is expected to fit with room
+// to spare. After every switch the window starts over, so one decision is always based on a full window.
+// The humans returned are in the heatmap space of the reference size, whatever resolution was used.
+public class AdaptiveResolutionController
+{
+    public static final int[][] DefaultResolutions = {{656, 368}, {512, 288}, {432, 240}};
+    private final int WindowSize = 30;
+    private final double UpscaleHeadroom = 0.8;
+
+    private final Graph graph;
+    private final PoseDetector[] detectors;
+    private final int[][] resolutions;
+    private final Size[] sizes;
+    private final Mat[] resized;
+    private final int referenceMapWidth;
+    private final int referenceMapHeight;
+    private long budgetNanos;
+
+    private final long[] window = new long[WindowSize];
+    private final long[] sorted = new long[WindowSize];
+    private int samples;
+    private int current;
+    private int switches;
+
+    private Human[] humans = new Human[0];
+    private final ArrayList<Human> humans_final = new ArrayList<Human>();
+
+    // resolutions are {width, height} pairs ordered from the largest to the smallest, the reference size is usually the
+    // size the results get drawn at; every size is a multiple of the model's stride
+    public AdaptiveResolutionController(ModelDescriptor model, int[][] resolutions,
+                                        int referenceWidth, int referenceHeight, long budgetNanos)
+    {
+        if (resolutions.length == 0) {
+            throw new IllegalArgumentException("At least one resolution is needed");
+        }
+        this.resolutions = resolutions;
+        this.referenceMapWidth = referenceWidth / model.getStride();
+        this.referenceMapHeight = referenceHeight / model.getStride();
+        this.budgetNanos = budgetNanos;
+
+        graph = TensorFlowInferenceInterface.importGraph(model.getFile());
+        detectors = new PoseDetector[resolutions.length];
+        sizes = new Size[resolutions.length];
+        resized = new Mat[resolutions.length];
+        for (int i = 0; i < resolutions.length; i++) {
+            detectors[i] = new PoseDetector(new TensorFlowInferenceInterface(graph, null), model,
+                    resolutions[i][0], resolutions[i][1]);
+            sizes[i] = new Size(resolutions[i][0], resolutions[i][1]);
+            resized[i] = new Mat();
+        }
+    }
+
+    public void setBudgetNanos(long budgetNanos)
+    {
+        this.budgetNanos = budgetNanos;
+        samples = 0;
+    }
+
+    // index into the resolutions, 0 is the largest
+    public int getCurrentIndex()
+    {
+        return current;
+    }
+
+    public int getCurrentWidth()
+    {
+        return resolutions[current][0];
+    }
+
+    public int getCurrentHeight()
+    {
+        return resolutions[current][1];
+    }
+
+    public int getSwitchCount()
+    {
+        return switches;
+    }
+
+    // the p95 of the current window, 0 before the first frame
+    public long getP95Nanos()
+    {
+        int count = Math.min(samples, WindowSize);
+        if (count == 0) {
+            return 0;
+        }
+        System.arraycopy(window, 0, sorted, 0, count);
+        Arrays.sort(sorted, 0, count);
+        return sorted[(int) Math.ceil(count * 0.95) - 1];
+    }
+
+    // the frame can have any size, it is resized to the current resolution; the returned list and the humans in it are
+    // reused, they stay valid only until the next call
+    public List<Human> recognizePoses(Mat bgrFrame)
+    {
+        int index = current;
+        Mat input = bgrFrame;
+        if (bgrFrame.cols() != resolutions[index][0] || bgrFrame.rows() != resolutions[index][1]) {
+            Imgproc.resize(bgrFrame, resized[index], sizes[index]);
+            input = resized[index];
+        }
+
+        long start = System.nanoTime();
+        detectors[index].setImage(input);
+        List<Human> detected = detectors[index].recognizePoses();
+        record(System.nanoTime() - start);
+
+        return rescale(detected, detectors[index].getMapWidth(), detectors[index].getMapHeight());
+    }
+
+    public void close()
+    {
+        for (PoseDetector detector : detectors) {
+            detector.close();
+        }
+        graph.close();
+    }
+
+    private void record(long nanos)
+    {
+        window[samples % WindowSize] = nanos;
+        samples++;
+        if (samples < WindowSize) {
+            return;
+        }
+
+        long p95 = getP95Nanos();
+        if (p95 > budgetNanos && current < detectors.length - 1) {
+            switchTo(current + 1);
+        } else if (current > 0) {
+            double pixelRatio = (double) (resolutions[current - 1][0] * resolutions[current - 1][1])
+                    / (resolutions[current][0] * resolutions[current][1]);
+            if (p95 * pixelRatio < budgetNanos * UpscaleHeadroom) {
+                switchTo(current - 1);
+            }
+        }
+    }
+
+    private void switchTo(int index)
+    {
+        current = index;
+        samples = 0;
+        switches++;
+    }
+
+    private List<Human> rescale(List<Human> detected, int mapWidth, int mapHeight)
+    {
+        if (humans.length < detected.size()) {
+            humans = Arrays.copyOf(humans, detected.size() * 2);
+            for (int i = 0; i < humans.length; i++) {
+                if (humans[i] == null) {
+                    humans[i] = new Human();
+                }
+            }
+        }
+        humans_final.clear();
+        for (int i = 0; i < detected.size(); i++) {
+            Human human = humans[i];
+            human.copyFrom(detected.get(i));
+            for (int part = 0; part < human.parts_coords.length; part++) {
+                if (human.coords_index_assigned[part]) {
+                    // rounding can reach the edge when the reference map is less than half the inference map
+                    human.parts_coords[part][0] = Math.min(referenceMapHeight - 1,
+                            Math.round((float) human.parts_coords[part][0] * referenceMapHeight / mapHeight));
+                    human.parts_coords[part][1] = Math.min(referenceMapWidth - 1,
+                            Math.round((float) human.parts_coords[part][1] * referenceMapWidth / mapWidth));
+                }
+            }
+            humans_final.add(human);
+        }
+        return humans_final;
+    }
+}
@@ -1,5 +1,6 @@
 package logic;
 
+import logic.metrics.PoseMetrics;
 import org.opencv.core.Mat;
 import org.opencv.core.Size;
 import org.opencv.imgproc.Imgproc;
@@ -9,10 +10,17 @@ import org.opencv.videoio.Videoio;
 
 import java.awt.image.BufferedImage;
 import java.awt.image.DataBufferByte;
+import java.util.concurrent.locks.LockSupport;
 
 public class Camera
 {
     private VideoCapture videoCapture;
+    private Mat captured = new Mat();
+    private Size size = new Size();
+    private long frameNanos;
+    private long nextFrameNanos;
+    private boolean paced;
+    private boolean ended;
 
     public Camera(int width, int height, int cameraIndex)
     {
@@ -25,11 +33,37 @@ public class Camera
         }
     }
 
+    // a video file or stream URL in place of a device, e.g. for recorded feeds; a file is read at its own frame rate
+    // like a camera would deliver it, not as fast as it decodes
+    public Camera(String source)
+    {
+        videoCapture = new VideoCapture(source);
+        // live streams report no frame count and already arrive at their frame rate
+        double fps = videoCapture.get(Videoio.CAP_PROP_FPS);
+        if (videoCapture.get(Videoio.CAP_PROP_FRAME_COUNT) > 0 && fps > 0) {
+            frameNanos = (long) (1e9 / fps);
+        }
+    }
+
     public VideoCapture getVideoCapture()
     {
         return videoCapture;
     }
 
+    // true once read() failed at the end of a file
+    public boolean isEnded()
+    {
+        return ended;
+    }
+
+    // starts a file over at its first frame, false when the source can't seek
+    public boolean rewind()
+    {
+        ended = false;
+        paced = false;
+        return videoCapture.set(Videoio.CAP_PROP_POS_FRAMES, 0);
+    }
+
     public BufferedImage getFrame(int width, int height)
     {
         BufferedImage image = null;
@@ -52,6 +86,43 @@ public class Camera
         return image;
     }
 
+    // reads the next frame straight into the reused target Mat, resized to width x height
+    public boolean read(Mat target, int width, int height)
+    {
+        if (frameNanos > 0) {
+            pace();
+        }
+        try {
+            long start = System.nanoTime();
+            if (this.videoCapture.read(captured) && !captured.empty()) {
+                size.width = width;
+                size.height = height;
+                Imgproc.resize(captured, target, size);
+                PoseMetrics.Global.record(PoseMetrics.Stage.Capture, System.nanoTime() - start);
+                return true;
+            }
+        } catch (Exception e) {
+            System.err.println("Exception during the image elaboration: " + e);
+        }
+
+        ended = frameNanos > 0;
+        return false;
+    }
+
+    // waits until the next frame of a file is due; a reader that fell behind goes on from now instead of catching up
+    private void pace()
+    {
+        long now = System.nanoTime();
+        if (paced) {
+            while (nextFrameNanos - now > 0) {
+                LockSupport.parkNanos(nextFrameNanos - now);
+                now = System.nanoTime();
+            }
+        }
+        nextFrameNanos = paced && now - nextFrameNanos < frameNanos ? nextFrameNanos + frameNanos : now + frameNanos;
+        paced = true;
+    }
+
     public static BufferedImage matToBufferedImage(Mat original)
     {
         BufferedImage image = null;
@@ -72,6 +143,13 @@ public class Camera
         return image;
     }
 
+    // copies into an existing image of the same size and type, used by the display path to avoid a new image per frame
+    public static void matToBufferedImage(Mat original, BufferedImage image)
+    {
+        final byte[] targetPixels = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+        original.get(0, 0, targetPixels);
+    }
+
     public void stop()
     {
         videoCapture.release();
@@ -0,0 +1,96 @@
+package logic;
+
+import logic.kernels.Kernels;
+import logic.kernels.PoseKernels;
+
+import java.nio.FloatBuffer;
+
+public class HeatmapNms
+{
+    private final int mapWidth;
+    private final int mapHeight;
+    private final int channelStride;
+    private final int partCount;
+    private final int before;
+    private final int after;
+    private final float threshold;
+    private final float[][] planes;
+    private final float[][] rowMax;
+    private final float[][] colMax;
+    private final PoseKernels kernels = Kernels.Selected;
+
+    public HeatmapNms(int mapWidth, int mapHeight, int channelStride, int partCount, int filterSize, float threshold)
+    {
+        this.mapWidth = mapWidth;
+        this.mapHeight = mapHeight;
+        this.channelStride = channelStride;
+        this.partCount = partCount;
+        this.before = (filterSize - 1) / 2;
+        this.after = (filterSize + 1) / 2 - 1;
+        this.threshold = threshold;
+        planes = new float[partCount][mapWidth * mapHeight];
+        rowMax = new float[partCount][mapWidth * mapHeight];
+        colMax = new float[partCount][mapWidth];
+    }
+
+    // copy the heatmap channels out of the interleaved (height, width, channels) tensor in a single sequential pass
+    public void loadHeatmaps(FloatBuffer tensor, int offset)
+    {
+        int cells = mapWidth * mapHeight;
+        for (int cell = 0, base = offset; cell < cells; cell++, base += channelStride) {
+            for (int part = 0; part < partCount; part++) {
+                planes[part][cell] = tensor.get(base + part);
+            }
+        }
+    }
+
+    // The original window loop breaks out as soon as it runs over the top or left edge, so cells closer than
+    // (filterSize - 1) / 2 to those edges never become peaks, while the bottom and right edges just clip the window.
+    // Both passes keep that behaviour and the same "value > max, starting from 0" comparison.
+    // writes the peaks of one part as packed (row << 16 | column) coordinates in row-major order, returns their count
+    public int findPeaks(int part, int[] peaks)
+    {
+        int count = 0;
+        float[] plane = planes[part];
+        float[] rows = rowMax[part];
+        float[] cols = colMax[part];
+
+        // horizontal pass
+        for (int j = 0; j < mapHeight; j++) {
+            kernels.windowMax(plane, j * mapWidth, before, mapWidth, before, after, mapWidth, rows);
+        }
+
+        // vertical pass, accumulated row by row to keep the reads sequential
+        for (int j = before; j < mapHeight; j++) {
+            int end = Math.min(j + after, mapHeight - 1);
+            for (int k = before; k < mapWidth; k++) {
+                cols[k] = 0;
+            }
+            for (int jj = j - before; jj <= end; jj++) {
+                kernels.maxInto(cols, rows, jj * mapWidth, before, mapWidth);
+            }
+            count = kernels.collectPeaks(cols, plane, j * mapWidth, before, mapWidth, threshold, j, peaks, count);
+        }
+        return count;
+    }
+
+    public int capacity()
+    {
+        return mapWidth * mapHeight;
+    }
+
+    public static int pack(int row, int column)
+    {
+        return (row << 16) | column;
+    }
+
+    public static int row(int packed)
+    {
+        return packed >>> 16;
+    }
+
+    public static int column(int packed)
+    {
+        return packed & 0xFFFF;
+    }
+}
@@ -1,5 +1,6 @@
 package logic;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -10,4 +11,40 @@ public class Human
     public int parts_coords[][] = new int[18][2];
     public int coords_index_set[] = new int[18];
     public boolean coords_index_assigned[] = new boolean[18];
+    // stable across frames when the humans come from a PoseTracker, -1 otherwise
+    public int id = -1;
+
+    public void clear()
+    {
+        for (int i = 0; i < parts_coords.length; i++) {
+            parts_coords[i][0] = 0;
+            parts_coords[i][1] = 0;
+            coords_index_set[i] = 0;
+            coords_index_assigned[i] = false;
+        }
+        id = -1;
+    }
+
+    // new humans owned by the caller, for results that have to outlive the detector's reused ones
+    public static List<Human> copyOf(List<Human> humans)
+    {
+        List<Human> copies = new ArrayList<Human>(humans.size());
+        for (Human human : humans) {
+            Human copy = new Human();
+            copy.copyFrom(human);
+            copies.add(copy);
+        }
+        return copies;
+    }
+
+    public void copyFrom(Human other)
+    {
+        for (int i = 0; i < parts_coords.length; i++) {
+            parts_coords[i][0] = other.parts_coords[i][0];
+            parts_coords[i][1] = other.parts_coords[i][1];
+            coords_index_set[i] = other.coords_index_set[i];
+            coords_index_assigned[i] = other.coords_index_assigned[i];
+        }
+        id = other.id;
+    }
 }
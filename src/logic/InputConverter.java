@@ -0,0 +1,79 @@
+package logic;
+
+import logic.kernels.Kernels;
+import logic.kernels.PoseKernels;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+// turns 8 bit frames into the float network input, in the channel order the model expects
+public class InputConverter
+{
+    private int[] colorChannels;
+    private byte[] bgr_bytes;
+    // the kernels fill this array, a single bulk put moves it into the (direct) input buffer
+    private float[] float_pixels;
+    private final PoseKernels kernels = Kernels.Selected;
+    private int inWidth;
+    private int inHeight;
+
+    public InputConverter(String colorChannels, int width, int height)
+    {
+        inWidth = width;
+        inHeight = height;
+        bgr_bytes = new byte[width * height * 3];
+        float_pixels = new float[width * height * 3];
+        if (colorChannels.equals("BGR")) {
+            this.colorChannels = new int[]{0, 1, 2};
+        } else if (colorChannels.equals("RGB")) {
+            this.colorChannels = new int[]{2, 1, 0};
+        }
+    }
+
+    public void convert(int[] rgbImage, FloatBuffer float_image)
+    {
+        if (rgbImage.length != inWidth * inHeight) {
+            System.err.println("input size doesn't match (" + inWidth + "x" + inHeight + ")");
+        } else {
+            kernels.unpackPixels(rgbImage, rgbImage.length, colorChannels, float_pixels);
+            store(float_image);
+        }
+    }
+
+    // takes the resized 8 bit BGR frame straight from the camera, the only copy left is the one out of the native Mat
+    public void convert(Mat bgrFrame, FloatBuffer float_image)
+    {
+        if (bgrFrame.width() != inWidth || bgrFrame.height() != inHeight || bgrFrame.type() != CvType.CV_8UC3) {
+            System.err.println("input frame doesn't match (" + inWidth + "x" + inHeight + " BGR)");
+        } else {
+            bgrFrame.get(0, 0, bgr_bytes);
+            kernels.unpackBytes(bgr_bytes, bgr_bytes.length, colorChannels, float_pixels);
+            store(float_image);
+        }
+    }
+
+    // packed BGR bytes, read from the current position without moving it
+    public void convert(ByteBuffer bgrBytes, FloatBuffer float_image)
+    {
+        int size = inWidth * inHeight * 3;
+        if (bgrBytes.remaining() != size) {
+            System.err.println("input size doesn't match (" + inWidth + "x" + inHeight + "x3)");
+        } else {
+            int offset = bgrBytes.position();
+            bgrBytes.get(bgr_bytes);
+            bgrBytes.position(offset);
+            kernels.unpackBytes(bgr_bytes, size, colorChannels, float_pixels);
+            store(float_image);
+        }
+    }
+
+    // fills the buffer from index 0, position and limit are left as the callers found them after clear()
+    private void store(FloatBuffer float_image)
+    {
+        float_image.clear();
+        float_image.put(float_pixels, 0, inWidth * inHeight * 3);
+        float_image.clear();
+    }
+}
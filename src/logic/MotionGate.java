@@ -0,0 +1,110 @@
+package logic;
+
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+// Decides whether a frame is worth a network run. Every frame is shrunk to a 32x18 grayscale thumbnail and compared
+// block by block (4x3 blocks of 8x6 pixels) against the thumbnail of the last frame that was let through. The frame
+// passes when the mean absolute difference of any block exceeds the threshold, so a single person moving in a
+// corner is not averaged away by a static background, or when maxStaleFrames frames in a row have been gated.
+// Not thread-safe, the counters may be read from any thread.
+public class MotionGate
+{
+    private final int ThumbnailWidth = 32;
+    private final int ThumbnailHeight = 18;
+    private final int BlockWidth = 8;
+    private final int BlockHeight = 6;
+
+    private float threshold;
+    private int maxStaleFrames;
+
+    private final Size thumbnailSize = new Size(ThumbnailWidth, ThumbnailHeight);
+    private final Mat small = new Mat();
+    private final Mat gray = new Mat();
+    private final byte[] current = new byte[ThumbnailWidth * ThumbnailHeight];
+    private final byte[] reference = new byte[ThumbnailWidth * ThumbnailHeight];
+    private boolean hasReference;
+    private int staleFrames;
+    private float lastDifference;
+
+    private volatile long gatedFrames;
+    private volatile long passedFrames;
+
+    // threshold is a mean absolute difference per pixel (0 - 255) within one block, 0 stale frames disables gating
+    public MotionGate(float threshold, int maxStaleFrames)
+    {
+        this.threshold = threshold;
+        this.maxStaleFrames = maxStaleFrames;
+    }
+
+    public void setThreshold(float threshold)
+    {
+        this.threshold = threshold;
+    }
+
+    public void setMaxStaleFrames(int maxStaleFrames)
+    {
+        this.maxStaleFrames = maxStaleFrames;
+    }
+
+    // true when the frame has to go through the network, false when the previous poses can be reused
+    public boolean shouldInfer(Mat bgrFrame)
+    {
+        Imgproc.resize(bgrFrame, small, thumbnailSize, 0, 0, Imgproc.INTER_AREA);
+        Imgproc.cvtColor(small, gray, Imgproc.COLOR_BGR2GRAY);
+        gray.get(0, 0, current);
+
+        lastDifference = hasReference ? maxBlockDifference() : Float.MAX_VALUE;
+        if (lastDifference > threshold || staleFrames >= maxStaleFrames) {
+            System.arraycopy(current, 0, reference, 0, current.length);
+            hasReference = true;
+            staleFrames = 0;
+            passedFrames++;
+            return true;
+        }
+        staleFrames++;
+        gatedFrames++;
+        return false;
+    }
+
+    // the next frame passes whatever its content
+    public void reset()
+    {
+        hasReference = false;
+    }
+
+    // largest block difference of the last frame, for tuning the threshold
+    public float getLastDifference()
+    {
+        return lastDifference;
+    }
+
+    public long getGatedFrameCount()
+    {
+        return gatedFrames;
+    }
+
+    public long getInferredFrameCount()
+    {
+        return passedFrames;
+    }
+
+    private float maxBlockDifference()
+    {
+        int max = 0;
+        for (int by = 0; by < ThumbnailHeight; by += BlockHeight) {
+            for (int bx = 0; bx < ThumbnailWidth; bx += BlockWidth) {
+                int sad = 0;
+                for (int y = by; y < by + BlockHeight; y++) {
+                    for (int x = bx; x < bx + BlockWidth; x++) {
+                        int i = y * ThumbnailWidth + x;
+                        sad += Math.abs((current[i] & 0xFF) - (reference[i] & 0xFF));
+                    }
+                }
+                max = Math.max(max, sad);
+            }
+        }
+        return (float) max / (BlockWidth * BlockHeight);
+    }
+}
@@ -1,239 +1,311 @@
 package logic;
 
+import logic.archive.TensorRecordingWriter;
+import logic.metrics.PoseMetrics;
+import logic.model.ModelDescriptor;
+import logic.model.ModelRegistry;
+import logic.tensorflow.PeakRun;
+import logic.tensorflow.PreparedRun;
 import logic.tensorflow.TensorFlowInferenceInterface;
+import org.opencv.core.Mat;
 
-import java.nio.file.Paths;
-import java.util.Vector;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 public class PoseDetector
 {
-    private final String MODEL_FILE = "resources/thin.pb";
-    private final String INPUT_NAME = "image";
-    private final String OUTPUT_NAME = "Openpose/concat_stage7";
-    private final float NMS_Threshold = 0.15f;
-    private final float Local_PAF_Threshold = 0.2f;
-    private final float Part_Score_Threshold = 0.2f;
-    private final int PAF_Count_Threshold = 5;
-    private final int Part_Count_Threshold = 4;
+    public static final String MODEL_FILE = "resources/thin.pb";
+    private final String INPUT_NAME;
+    private final String OUTPUT_NAME;
+    private final ModelDescriptor model;
     private int MapHeight;
     private int MapWidth;
     private final int HeatMapCount = 19;
-    private final int MaxPairCount = 17;
     private final int PafMapCount = 38;
-    private final int MaximumFilterSize = 5;
     public static final int[][] CocoPairs = {{1, 2}, {1, 5}, {2, 3}, {3, 4}, {5, 6}, {6, 7}, {1, 8}, {8, 9}, {9, 10}, {1, 11},
             {11, 12}, {12, 13}, {1, 0}, {0, 14}, {14, 16}, {0, 15}, {15, 17}};
-    private final int[][] CocoPairsNetwork = {{12, 13}, {20, 21}, {14, 15}, {16, 17}, {22, 23}, {24, 25}, {0, 1}, {2, 3},
-            {4, 5}, {6, 7}, {8, 9}, {10, 11}, {28, 29}, {30, 31}, {34, 35}, {32, 33}, {36, 37}, {18, 19}, {26, 27}};
 
-    private int[] colorChannels;
-    private String[] outputNames;
-    private float[] float_image;
-    private float[] output_tensor;
+    private InputConverter inputConverter;
+    private FloatBuffer float_image;
+    private FloatBuffer output_tensor;
     private TensorFlowInferenceInterface inferenceInterface;
+    private PreparedRun preparedRun;
+    private PreparedRun batchRun;
+    private PeakRun peakRun;
+    private boolean inGraphPeaks;
+    private FloatBuffer[] batchInputs;
+    private PosePostProcessor postProcessor;
     private int inWidth;
     private int inHeight;
+    private TensorRecordingWriter recorder;
 
+    // the thin model fed in the given channel order
     public PoseDetector(String colorChannels, int width, int height)
     {
+        this(ModelRegistry.Thin.withChannelOrder(colorChannels), width, height);
+    }
+
+    // the model at its default resolution
+    public PoseDetector(ModelDescriptor model)
+    {
+        this(model, model.getDefaultWidth(), model.getDefaultHeight());
+    }
+
+    public PoseDetector(ModelDescriptor model, int width, int height)
+    {
+        this(new TensorFlowInferenceInterface(model.getFile()), model, width, height);
+    }
+
+    // runs the thin model on an interface that may share its graph with other detectors, see PoseDetectorPool
+    public PoseDetector(TensorFlowInferenceInterface inferenceInterface, String colorChannels, int width, int height)
+    {
+        this(inferenceInterface, ModelRegistry.Thin.withChannelOrder(colorChannels), width, height);
+    }
+
+    // the interface must hold the model's graph, width and height must be multiples of its stride
+    public PoseDetector(TensorFlowInferenceInterface inferenceInterface, ModelDescriptor model, int width, int height)
+    {
+        if (width % model.getStride() != 0 || height % model.getStride() != 0) {
+            throw new IllegalArgumentException("Input size " + width + "x" + height + " is not a multiple of the stride "
+                    + model.getStride() + " of " + model.getName());
+        }
+        this.model = model;
+        INPUT_NAME = model.getInputName();
+        OUTPUT_NAME = model.getOutputName();
         inWidth = width;
         inHeight = height;
-        MapWidth = width / 8;
-        MapHeight = height / 8;
-        inferenceInterface = new TensorFlowInferenceInterface(Paths.get(MODEL_FILE));
-        outputNames = new String[]{OUTPUT_NAME};
-        float_image = new float[width * height * 3];
-        output_tensor = new float[MapHeight * MapWidth * (HeatMapCount + PafMapCount)];
-        if (colorChannels.equals("BGR")) {
-            this.colorChannels = new int[]{0, 1, 2};
-        } else if (colorChannels.equals("RGB")) {
-            this.colorChannels = new int[]{2, 1, 0};
-        }
+        MapWidth = width / model.getStride();
+        MapHeight = height / model.getStride();
+        this.inferenceInterface = inferenceInterface;
+        preparedRun = inferenceInterface.prepare(INPUT_NAME, new long[]{1, inHeight, inWidth, 3}, OUTPUT_NAME,
+                MapHeight * MapWidth * (HeatMapCount + PafMapCount));
+        float_image = preparedRun.input();
+        output_tensor = preparedRun.output();
+        postProcessor = new PosePostProcessor(MapWidth, MapHeight);
+        inputConverter = new InputConverter(model.getChannelOrder(), width, height);
     }
 
-    public void setImage(int[] rgbImage)
+    public ModelDescriptor getModel()
     {
-        if (rgbImage.length != inWidth * inHeight) {
-            System.err.println("input size doesn't match (" + inWidth + "x" + inHeight + ")");
-        } else {
-            System.out.println("input size (" + inWidth + "x" + inHeight + ")");
-            for (int i = 0; i < rgbImage.length; ++i) {
-                final int val = rgbImage[i];
-                float_image[i * 3 + colorChannels[0]] = ((val >> 16) & 0xFF); //R
-                float_image[i * 3 + colorChannels[1]] = ((val >> 8) & 0xFF);  //G
-                float_image[i * 3 + colorChannels[2]] = (val & 0xFF);         //B
-            }
+        return model;
+    }
+
+    // the output is getMapHeight() x getMapWidth() cells of getOutputChannels() floats
+    public int getMapWidth()
+    {
+        return MapWidth;
+    }
+
+    public int getMapHeight()
+    {
+        return MapHeight;
+    }
+
+    public int getOutputChannels()
+    {
+        return HeatMapCount + PafMapCount;
+    }
+
+    // frames fed together by recognizePoses(List), the batch buffers are allocated once per size
+    public void setBatchSize(int batchSize)
+    {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1: " + batchSize);
+        }
+        if (batchRun != null && batchRun.batchSize() == batchSize) {
+            return;
+        }
+        batchRun = inferenceInterface.prepare(INPUT_NAME, new long[]{batchSize, inHeight, inWidth, 3}, OUTPUT_NAME,
+                batchSize * MapHeight * MapWidth * (HeatMapCount + PafMapCount));
+        batchInputs = new FloatBuffer[batchSize];
+        FloatBuffer input = batchRun.input();
+        for (int i = 0; i < batchSize; i++) {
+            input.position(i * batchRun.inputFrameSize());
+            input.limit((i + 1) * batchRun.inputFrameSize());
+            batchInputs[i] = input.slice();
+            input.clear();
         }
     }
 
-    public Vector<Human> recognizePoses()
-    {
-
-        inferenceInterface.feed(INPUT_NAME, float_image, 1, inHeight, inWidth, 3);
-
-        inferenceInterface.run(outputNames);
-
-        inferenceInterface.fetch(OUTPUT_NAME, output_tensor);
-
-        Vector<int[]> coordinates[] = new Vector[HeatMapCount - 1];
-
-        // eliminate duplicate part recognitions
-        for (int i = 0; i < (HeatMapCount - 1); i++) {
-            coordinates[i] = new Vector<int[]>();
-            for (int j = 0; j < MapHeight; j++) {
-                for (int k = 0; k < MapWidth; k++) {
-                    int[] coordinate = {j, k};
-                    float max_value = 0;
-                    for (int dj = -(MaximumFilterSize - 1) / 2; dj < (MaximumFilterSize + 1) / 2; dj++) {
-                        if ((j + dj) >= MapHeight || (j + dj) < 0) {
-                            break;
-                        }
-                        for (int dk = -(MaximumFilterSize - 1) / 2; dk < (MaximumFilterSize + 1) / 2; dk++) {
-                            if ((k + dk) >= MapWidth || (k + dk) < 0) {
-                                break;
-                            }
-                            float value = output_tensor[(HeatMapCount + PafMapCount) * MapWidth * (j + dj) + (HeatMapCount + PafMapCount) * (k + dk) + i];
-                            if (value > max_value) {
-                                max_value = value;
-                            }
-                        }
-                    }
-                    if (max_value > NMS_Threshold) {
-                        if (max_value == output_tensor[(HeatMapCount + PafMapCount) * MapWidth * j + (HeatMapCount + PafMapCount) * k + i]) {
-                            coordinates[i].addElement(coordinate);
-                        }
-                    }
-                }
-            }
+    public int getBatchSize()
+    {
+        return batchRun == null ? 1 : batchRun.batchSize();
+    }
+
+    // splits NMS per part and pair scoring per limb across the pool, null switches back to the serial path
+    public void setPostProcessingPool(ForkJoinPool pool)
+    {
+        postProcessor.setPool(pool);
+    }
+
+    // candidate pairs further apart than this many heatmap cells are never scored, no limit unless set, see PosePostProcessor
+    public void setMaxLimbLength(float cells)
+    {
+        postProcessor.setMaxLimbLength(cells);
+    }
+
+    // In-graph peak extraction: max-pool NMS runs inside TensorFlow and only the peak coordinates and the PAF channels
+    // are fetched instead of the whole output. Only recognizePoses() uses it, false switches back to the Java NMS.
+    public void setInGraphPeaks(boolean enabled)
+    {
+        if (enabled && peakRun == null) {
+            String[] outputs = inferenceInterface.appendPeakExtraction(OUTPUT_NAME, HeatMapCount - 1, HeatMapCount, PafMapCount,
+                    PosePostProcessor.MaximumFilterSize, PosePostProcessor.NMS_Threshold);
+            peakRun = inferenceInterface.preparePeaks(INPUT_NAME, new long[]{1, inHeight, inWidth, 3},
+                    outputs[0], MapHeight * MapWidth * (HeatMapCount - 1), outputs[1], MapHeight * MapWidth * PafMapCount);
         }
+        inGraphPeaks = enabled;
+    }
 
-        // eliminate duplicate connections
-        Vector<int[]> pairs[] = new Vector[MaxPairCount];
-        Vector<int[]> pairs_final[] = new Vector[MaxPairCount];
-        Vector<Float> pairs_scores[] = new Vector[MaxPairCount];
-        Vector<Float> pairs_scores_final[] = new Vector[MaxPairCount];
-        for (int i = 0; i < MaxPairCount; i++) {
-            pairs[i] = new Vector<int[]>();
-            pairs_scores[i] = new Vector<Float>();
-            pairs_final[i] = new Vector<int[]>();
-            pairs_scores_final[i] = new Vector<Float>();
-            Vector<Integer> part_set = new Vector<Integer>();
-            for (int p1 = 0; p1 < coordinates[CocoPairs[i][0]].size(); p1++) {
-                for (int p2 = 0; p2 < coordinates[CocoPairs[i][1]].size(); p2++) {
-                    int count = 0;
-                    float score = 0.0f;
-                    float scores[] = new float[10];
-                    int p1x = coordinates[CocoPairs[i][0]].get(p1)[0];
-                    int p1y = coordinates[CocoPairs[i][0]].get(p1)[1];
-                    int p2x = coordinates[CocoPairs[i][1]].get(p2)[0];
-                    int p2y = coordinates[CocoPairs[i][1]].get(p2)[1];
-                    float dx = p2x - p1x;
-                    float dy = p2y - p1y;
-                    float normVec = (float) Math.sqrt(Math.pow(dx, 2) + Math.pow(dy, 2));
-
-                    if (normVec < 0.0001f) {
-                        break;
-                    }
-                    float vx = dx / normVec;
-                    float vy = dy / normVec;
-                    for (int t = 0; t < 10; t++) {
-                        int tx = (int) ((float) p1x + (t * dx / 9) + 0.5);
-                        int ty = (int) ((float) p1y + (t * dy / 9) + 0.5);
-                        int location = tx * (HeatMapCount + PafMapCount) * MapWidth + ty * (HeatMapCount + PafMapCount) + HeatMapCount;
-                        scores[t] = vy * output_tensor[location + CocoPairsNetwork[i][0]];
-                        scores[t] += vx * output_tensor[location + CocoPairsNetwork[i][1]];
-                    }
-                    for (int h = 0; h < 10; h++) {
-                        if (scores[h] > Local_PAF_Threshold) {
-                            count += 1;
-                            score += scores[h];
-                        }
-                    }
-                    if (score > Part_Score_Threshold && count >= PAF_Count_Threshold) {
-                        boolean inserted = false;
-                        int pair[] = {p1, p2};
-                        for (int l = 0; l < pairs[i].size(); l++) {
-                            if (score > pairs_scores[i].get(l)) {
-                                pairs[i].insertElementAt(pair, l);
-                                pairs_scores[i].insertElementAt(score, l);
-                                inserted = true;
-                                break;
-                            }
-                        }
-                        if (!inserted) {
-                            pairs[i].addElement(pair);
-                            pairs_scores[i].addElement(score);
-                        }
-                    }
-                }
-            }
-            for (int m = 0; m < pairs[i].size(); m++) {
-                boolean conflict = false;
-                for (int n = 0; n < part_set.size(); n++) {
-                    if (pairs[i].get(m)[0] == part_set.get(n) || pairs[i].get(m)[1] == part_set.get(n)) {
-                        conflict = true;
-                        break;
-                    }
-                }
-                if (!conflict) {
-                    pairs_final[i].addElement(pairs[i].get(m));
-                    pairs_scores_final[i].addElement(pairs_scores[i].get(m));
-                    part_set.addElement(pairs[i].get(m)[0]);
-                    part_set.addElement(pairs[i].get(m)[1]);
-                }
-            }
+    public boolean isInGraphPeaks()
+    {
+        return inGraphPeaks;
+    }
+
+    public void setImage(int[] rgbImage)
+    {
+        prepareInput(rgbImage, float_image);
+    }
+
+    public void setImage(Mat bgrFrame)
+    {
+        prepareInput(bgrFrame, float_image);
+    }
+
+    public void setImage(ByteBuffer bgrBytes)
+    {
+        prepareInput(bgrBytes, float_image);
+    }
+
+    // runs the network on a blank frame so TensorFlow initializes its kernels before the first real one, overwrites
+    // the current image
+    public void warmUp(int runs)
+    {
+        for (int i = 0; i < float_image.capacity(); i++) {
+            float_image.put(i, 0.0f);
+        }
+        for (int i = 0; i < runs; i++) {
+            preparedRun.run();
         }
+    }
 
-        Vector<Human> humans = new Vector<Human>();
-        Vector<Human> humans_final = new Vector<Human>();
-        for (int i = 0; i < MaxPairCount; i++) {
-            for (int j = 0; j < pairs_final[i].size(); j++) {
-                boolean merged = false;
-                int p1 = CocoPairs[i][0];
-                int p2 = CocoPairs[i][1];
-                int ip1 = pairs_final[i].get(j)[0];
-                int ip2 = pairs_final[i].get(j)[1];
-                for (int k = 0; k < humans.size(); k++) {
-                    Human human = humans.get(k);
-                    if ((ip1 == human.coords_index_set[p1] && human.coords_index_assigned[p1]) || (ip2 == human.coords_index_set[p2] && human.coords_index_assigned[p2])) {
-                        human.parts_coords[p1] = coordinates[p1].get(ip1);
-                        human.parts_coords[p2] = coordinates[p2].get(ip2);
-                        human.coords_index_set[p1] = ip1;
-                        human.coords_index_set[p2] = ip2;
-                        human.coords_index_assigned[p1] = true;
-                        human.coords_index_assigned[p2] = true;
-                        merged = true;
-                        break;
-                    }
-                }
-                if (!merged) {
-                    Human human = new Human();
-                    human.parts_coords[p1] = coordinates[p1].get(ip1);
-                    human.parts_coords[p2] = coordinates[p2].get(ip2);
-                    human.coords_index_set[p1] = ip1;
-                    human.coords_index_set[p2] = ip2;
-                    human.coords_index_assigned[p1] = true;
-                    human.coords_index_assigned[p2] = true;
-                    humans.addElement(human);
-                }
-            }
+    // the returned humans are reused by the next call
+    public List<Human> recognizePoses()
+    {
+        if (inGraphPeaks) {
+            peakRun.run(float_image);
+            return postProcessor.process(peakRun.peaks(), peakRun.peakCount(), peakRun.pafs());
         }
 
-        // remove people with too few parts
-        for (int i = 0; i < humans.size(); i++) {
-            int human_part_count = 0;
-            for (int j = 0; j < HeatMapCount - 1; j++) {
-                if (humans.get(i).coords_index_assigned[j]) {
-                    human_part_count += 1;
-                }
+        preparedRun.run();
+
+        return decode(output_tensor);
+    }
+
+    // Feeds the frames in batches of getBatchSize() as [N, height, width, 3] tensors, one session run per batch, and
+    // post-processes every slice of the [N, MapHeight, MapWidth, 57] output. Returns one list per frame, in order;
+    // unlike recognizePoses() the humans are new objects owned by the caller.
+    public List<List<Human>> recognizePoses(List<Mat> frames)
+    {
+        if (batchRun == null) {
+            setBatchSize(1);
+        }
+        List<List<Human>> results = new ArrayList<List<Human>>(frames.size());
+        for (int first = 0; first < frames.size(); first += batchRun.batchSize()) {
+            int count = Math.min(batchRun.batchSize(), frames.size() - first);
+            for (int i = 0; i < count; i++) {
+                prepareInput(frames.get(first + i), batchInputs[i]);
             }
-            if (human_part_count > Part_Count_Threshold) {
-                humans_final.addElement(humans.get(i));
+
+            batchRun.run(count);
+
+            for (int i = 0; i < count; i++) {
+                record(batchRun.output(), i * batchRun.outputFrameSize());
+                results.add(Human.copyOf(postProcessor.process(batchRun.output(), i * batchRun.outputFrameSize())));
             }
         }
+        return results;
+    }
+
+    // prepareInput, runInference and decode may run on three different threads (one thread per method) as long as
+    // each call works on its own input / output buffers, see logic.pipeline.FramePipeline
+    public FloatBuffer newInputBuffer()
+    {
+        return ByteBuffer.allocateDirect(inWidth * inHeight * 3 * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+    }
+
+    public FloatBuffer newOutputBuffer()
+    {
+        return ByteBuffer.allocateDirect(MapHeight * MapWidth * (HeatMapCount + PafMapCount) * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+    }
+
+    public void prepareInput(int[] rgbImage, FloatBuffer float_image)
+    {
+        long start = System.nanoTime();
+        inputConverter.convert(rgbImage, float_image);
+        PoseMetrics.Global.record(PoseMetrics.Stage.Preprocessing, System.nanoTime() - start);
+    }
+
+    public void prepareInput(Mat bgrFrame, FloatBuffer float_image)
+    {
+        long start = System.nanoTime();
+        inputConverter.convert(bgrFrame, float_image);
+        PoseMetrics.Global.record(PoseMetrics.Stage.Preprocessing, System.nanoTime() - start);
+    }
 
-        System.out.println("Number of humans on the screen: " + humans_final.size());
+    public void prepareInput(ByteBuffer bgrBytes, FloatBuffer float_image)
+    {
+        long start = System.nanoTime();
+        inputConverter.convert(bgrBytes, float_image);
+        PoseMetrics.Global.record(PoseMetrics.Stage.Preprocessing, System.nanoTime() - start);
+    }
+
+    // copies the fetched output into the caller's buffer so it survives the next run
+    public void runInference(FloatBuffer float_image, FloatBuffer output_tensor)
+    {
+        preparedRun.run(float_image);
+
+        FloatBuffer fetched = preparedRun.output();
+        fetched.rewind();
+        output_tensor.clear();
+        output_tensor.put(fetched);
+    }
 
-        return humans_final;
+    // the returned humans are reused by the next call
+    public List<Human> decode(FloatBuffer output_tensor)
+    {
+        record(output_tensor, 0);
+        return postProcessor.process(output_tensor);
+    }
+
+    // Every output that goes through the Java post-processing from now on is appended to the recording, for replay
+    // without the camera and the model, see tools.TensorReplay. Frames of the in-graph peak path are not recorded,
+    // their full output is never fetched. The caller closes the recorder, null stops recording.
+    public void setTensorRecorder(TensorRecordingWriter recorder)
+    {
+        this.recorder = recorder;
+    }
+
+    private void record(FloatBuffer output_tensor, int offset)
+    {
+        if (recorder == null) {
+            return;
+        }
+        try {
+            recorder.append(output_tensor, offset);
+        } catch (IOException e) {
+            System.err.println("Stopped recording tensors after " + recorder.frameCount() + " frames: " + e);
+            recorder = null;
+        }
+    }
+
+    public void close()
+    {
+        inferenceInterface.close();
     }
 }
@@ -0,0 +1,112 @@
+package logic;
+
+import logic.model.ModelDescriptor;
+import logic.model.ModelRegistry;
+import logic.tensorflow.TensorFlowInferenceInterface;
+import org.opencv.core.Mat;
+import org.tensorflow.Graph;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// PoseDetector is not thread-safe, the pool imports the model once and gives every worker its own session,
+// prepared run and buffers on that shared graph
+public class PoseDetectorPool
+{
+    private final long CloseTimeoutSeconds = 10;
+
+    private final Graph graph;
+    private final PoseDetector[] detectors;
+    private final BlockingQueue<PoseDetector> idle;
+    private final ExecutorService executor;
+
+    // the thin model read from modelFile, fed in the given channel order
+    public PoseDetectorPool(Path modelFile, String colorChannels, int width, int height, int poolSize,
+                            int intraOpThreads, int interOpThreads)
+    {
+        this(ModelRegistry.Thin.withFile(modelFile).withChannelOrder(colorChannels), width, height, poolSize,
+                intraOpThreads, interOpThreads);
+    }
+
+    // pool size times intra-op threads should stay at or below the core count, 0 threads leaves it to TensorFlow
+    public PoseDetectorPool(ModelDescriptor model, int width, int height, int poolSize, int intraOpThreads, int interOpThreads)
+    {
+        graph = TensorFlowInferenceInterface.importGraph(model.getFile());
+        byte[] config = TensorFlowInferenceInterface.sessionConfig(intraOpThreads, interOpThreads);
+
+        detectors = new PoseDetector[poolSize];
+        idle = new ArrayBlockingQueue<PoseDetector>(poolSize);
+        for (int i = 0; i < poolSize; i++) {
+            detectors[i] = new PoseDetector(new TensorFlowInferenceInterface(graph, config), model, width, height);
+            idle.add(detectors[i]);
+        }
+
+        AtomicInteger workerCount = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(poolSize, runnable -> {
+            Thread worker = new Thread(runnable, "pose-worker-" + workerCount.getAndIncrement());
+            worker.setDaemon(true);
+            return worker;
+        });
+    }
+
+    public int size()
+    {
+        return detectors.length;
+    }
+
+    // blocks until a detector is free, it must be handed back with release()
+    public PoseDetector checkout() throws InterruptedException
+    {
+        return idle.take();
+    }
+
+    public void release(PoseDetector detector)
+    {
+        idle.add(detector);
+    }
+
+    // the frame must stay untouched until the future completes, the humans in the result belong to the caller
+    public CompletableFuture<List<Human>> submit(Mat frame)
+    {
+        return CompletableFuture.supplyAsync(() -> {
+            PoseDetector detector;
+            try {
+                detector = checkout();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for a detector", e);
+            }
+            try {
+                detector.setImage(frame);
+                return Human.copyOf(detector.recognizePoses());
+            } finally {
+                release(detector);
+            }
+        }, executor);
+    }
+
+    // lets the submitted frames finish (for a bounded time) before the sessions and the graph are freed
+    public void close()
+    {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(CloseTimeoutSeconds, TimeUnit.SECONDS)) {
+                System.err.println("Pose workers still running after " + CloseTimeoutSeconds + " s, closing the detectors anyway");
+            }
+        } catch (InterruptedException e) {
+            System.err.println("Interrupted while waiting for the pose workers: " + e);
+            Thread.currentThread().interrupt();
+        }
+        for (PoseDetector detector : detectors) {
+            detector.close();
+        }
+        graph.close();
+    }
+}
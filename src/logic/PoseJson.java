@@ -0,0 +1,36 @@
+package logic;
+
+import java.util.List;
+
+// one JSON object per frame: {"frame":N,"humans":[[[row,column] or null for each of the 18 parts], ...]}
+// coordinates are heatmap cells, multiply by the model's stride (8 for the thin model) for input pixels
+public class PoseJson
+{
+    public static void append(StringBuilder json, long frame, List<Human> humans)
+    {
+        json.append("{\"frame\":").append(frame).append(",\"humans\":[");
+        for (int h = 0; h < humans.size(); h++) {
+            if (h > 0) {
+                json.append(',');
+            }
+            appendHuman(json, humans.get(h));
+        }
+        json.append("]}");
+    }
+
+    public static void appendHuman(StringBuilder json, Human human)
+    {
+        json.append('[');
+        for (int part = 0; part < human.parts_coords.length; part++) {
+            if (part > 0) {
+                json.append(',');
+            }
+            if (human.coords_index_assigned[part]) {
+                json.append('[').append(human.parts_coords[part][0]).append(',').append(human.parts_coords[part][1]).append(']');
+            } else {
+                json.append("null");
+            }
+        }
+        json.append(']');
+    }
+}
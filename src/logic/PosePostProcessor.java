@@ -0,0 +1,482 @@
+package logic;
+
+import logic.kernels.Kernels;
+import logic.kernels.PoseKernels;
+import logic.metrics.PoseMetrics;
+
+import java.nio.FloatBuffer;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+import static logic.PoseDetector.CocoPairs;
+
+public class PosePostProcessor
+{
+    // heatmaps and PAF channels per output cell
+    public static final int ChannelCount = 57;
+    static final float NMS_Threshold = 0.15f;
+    private final float Local_PAF_Threshold = 0.2f;
+    private final float Part_Score_Threshold = 0.2f;
+    private final int PAF_Count_Threshold = 5;
+    private final int Part_Count_Threshold = 4;
+    private final int HeatMapCount = 19;
+    private final int MaxPairCount = 17;
+    private final int PafMapCount = 38;
+    static final int MaximumFilterSize = 5;
+    private final int InitialPairCapacity = 16;
+    public static final int[][] CocoPairsNetwork = {{12, 13}, {20, 21}, {14, 15}, {16, 17}, {22, 23}, {24, 25}, {0, 1}, {2, 3},
+            {4, 5}, {6, 7}, {8, 9}, {10, 11}, {28, 29}, {30, 31}, {34, 35}, {32, 33}, {36, 37}, {18, 19}, {26, 27}};
+
+    private int MapHeight;
+    private int MapWidth;
+    private HeatmapNms nms;
+    private ForkJoinPool pool;
+    private FloatBuffer output_tensor;
+    private int output_offset;
+    // channels per cell and index of the first PAF channel in output_tensor
+    private int paf_stride;
+    private int paf_offset;
+
+    // per frame state: sized once, reset at the start of every frame and grown only when a frame needs more room
+    private int[][] coordinates;
+    private int[] coordinates_count;
+    private int[][] pairs;
+    private float[][] pairs_scores;
+    private int[] pairs_count;
+    private int[][] pairs_final;
+    private float[][] pairs_scores_final;
+    private int[] pairs_final_count;
+    private float[][] scores;
+    // the two PAF channels of a limb sampled along a candidate connection, projected by the kernels
+    private float[][] paf_first;
+    private float[][] paf_second;
+    private final PoseKernels kernels = Kernels.Selected;
+    // sort keys of the accepted pairs and the candidates of the limb's first and second part already taken
+    private long[][] pair_keys;
+    private BitSet[] used_first;
+    private BitSet[] used_second;
+    private float max_limb_length;
+    private Human[] humans = new Human[0];
+    // union-find over humans: parent[h] == h for the ones still standing
+    private int[] parent = new int[0];
+    // per part, the human that took each candidate of this frame or -1
+    private int[][] owner;
+    private int humans_count;
+    private ArrayList<Human> humans_final = new ArrayList<Human>();
+
+    private StageTask peakStage;
+    private StageTask pairStage;
+
+    public PosePostProcessor(int mapWidth, int mapHeight)
+    {
+        MapWidth = mapWidth;
+        MapHeight = mapHeight;
+        nms = new HeatmapNms(MapWidth, MapHeight, HeatMapCount + PafMapCount, HeatMapCount - 1, MaximumFilterSize, NMS_Threshold);
+
+        coordinates = new int[HeatMapCount - 1][nms.capacity()];
+        coordinates_count = new int[HeatMapCount - 1];
+        pairs = new int[MaxPairCount][InitialPairCapacity * 2];
+        pairs_scores = new float[MaxPairCount][InitialPairCapacity];
+        pairs_count = new int[MaxPairCount];
+        pairs_final = new int[MaxPairCount][InitialPairCapacity * 2];
+        pairs_scores_final = new float[MaxPairCount][InitialPairCapacity];
+        pairs_final_count = new int[MaxPairCount];
+        scores = new float[MaxPairCount][10];
+        paf_first = new float[MaxPairCount][10];
+        paf_second = new float[MaxPairCount][10];
+        owner = new int[HeatMapCount - 1][nms.capacity()];
+        pair_keys = new long[MaxPairCount][InitialPairCapacity];
+        used_first = new BitSet[MaxPairCount];
+        used_second = new BitSet[MaxPairCount];
+        for (int i = 0; i < MaxPairCount; i++) {
+            used_first[i] = new BitSet(nms.capacity());
+            used_second[i] = new BitSet(nms.capacity());
+        }
+        max_limb_length = Float.MAX_VALUE;
+
+        StageTask[] peakTasks = new StageTask[HeatMapCount - 1];
+        for (int i = 0; i < peakTasks.length; i++) {
+            peakTasks[i] = new StageTask(true, i, null);
+        }
+        StageTask[] pairTasks = new StageTask[MaxPairCount];
+        for (int i = 0; i < pairTasks.length; i++) {
+            pairTasks[i] = new StageTask(false, i, null);
+        }
+        peakStage = new StageTask(true, -1, peakTasks);
+        pairStage = new StageTask(false, -1, pairTasks);
+    }
+
+    // null runs everything on the calling thread, which allocates nothing once the buffers have grown to the scene;
+    // with a pool, ForkJoinPool.invoke() still allocates about 45 bytes per frame on the calling thread while it waits
+    // for the workers (see benchmark.AllocationCheck)
+    public void setPool(ForkJoinPool pool)
+    {
+        this.pool = pool;
+    }
+
+    // Candidate pairs further apart than this many map cells are never scored. There is no limit by default, any
+    // limit can drop real limbs of people close to the camera and so change the detected poses; set one for crowds
+    // of small people, where it skips most of the pairs.
+    public void setMaxLimbLength(float cells)
+    {
+        if (!(cells > 0)) {
+            throw new IllegalArgumentException("Maximum limb length must be positive: " + cells);
+        }
+        max_limb_length = cells;
+    }
+
+    public float getMaxLimbLength()
+    {
+        return max_limb_length;
+    }
+
+    // the returned list and the humans in it are reused, they stay valid only until the next call
+    public List<Human> process(FloatBuffer output_tensor)
+    {
+        return process(output_tensor, 0);
+    }
+
+    // offset is the index of the first float of the frame, e.g. one slice of a batched output
+    public List<Human> process(FloatBuffer output_tensor, int offset)
+    {
+        findPeaks(output_tensor, offset);
+        scorePairs();
+        return assembleHumans();
+    }
+
+    // For peaks found inside the graph, see TensorFlowInferenceInterface.appendPeakExtraction: peaks holds peakCount
+    // (batch, row, column, part) quadruples in row-major order and pafs only the PAF channels of the frame.
+    // Gives the same humans as process(FloatBuffer) on the full output.
+    public List<Human> process(LongBuffer peaks, int peakCount, FloatBuffer pafs)
+    {
+        loadPeaks(peaks, peakCount, pafs);
+        scorePairs();
+        return assembleHumans();
+    }
+
+    // process() split into its three stages, each one works on what the previous one left behind
+    public void findPeaks(FloatBuffer output_tensor, int offset)
+    {
+        long start = System.nanoTime();
+        this.output_tensor = output_tensor;
+        this.output_offset = offset;
+        this.paf_stride = HeatMapCount + PafMapCount;
+        this.paf_offset = HeatMapCount;
+
+        nms.loadHeatmaps(output_tensor, offset);
+
+        if (pool == null) {
+            for (int i = 0; i < (HeatMapCount - 1); i++) {
+                findPeaks(i);
+            }
+        } else {
+            // every task writes only its own part / limb slot, so the merge in assembleHumans sees the same data as
+            // the serial path
+            peakStage.reinitialize();
+            pool.invoke(peakStage);
+        }
+        PoseMetrics.Global.record(PoseMetrics.Stage.Nms, System.nanoTime() - start);
+    }
+
+    public void loadPeaks(LongBuffer peaks, int peakCount, FloatBuffer pafs)
+    {
+        long start = System.nanoTime();
+        this.output_tensor = pafs;
+        this.output_offset = 0;
+        this.paf_stride = PafMapCount;
+        this.paf_offset = 0;
+
+        // the max pool pads its window, HeatmapNms never reports cells this close to the top or left edge
+        int edge = (MaximumFilterSize - 1) / 2;
+        Arrays.fill(coordinates_count, 0);
+        for (int i = 0; i < peakCount; i++) {
+            int row = (int) peaks.get(i * 4 + 1);
+            int column = (int) peaks.get(i * 4 + 2);
+            int part = (int) peaks.get(i * 4 + 3);
+            if (row >= edge && column >= edge) {
+                coordinates[part][coordinates_count[part]++] = HeatmapNms.pack(row, column);
+            }
+        }
+        PoseMetrics.Global.record(PoseMetrics.Stage.Nms, System.nanoTime() - start);
+    }
+
+    public void scorePairs()
+    {
+        long start = System.nanoTime();
+        if (pool == null) {
+            for (int i = 0; i < MaxPairCount; i++) {
+                scorePairs(i);
+            }
+        } else {
+            pairStage.reinitialize();
+            pool.invoke(pairStage);
+        }
+        PoseMetrics.Global.record(PoseMetrics.Stage.PafScoring, System.nanoTime() - start);
+    }
+
+    // eliminate duplicate part recognitions
+    private void findPeaks(int part)
+    {
+        coordinates_count[part] = nms.findPeaks(part, coordinates[part]);
+    }
+
+    // Limbs longer than the maximum, if one is set, are dropped before any PAF sample is read. The accepted pairs are appended
+    // unsorted and ordered with one sort of packed keys: the score's bits, inverted so higher scores come first
+    // (every accepted score is positive, so its bits order like the float), above the discovery index, so equal
+    // scores stay in discovery order. The greedy pass then takes each pair whose two candidates are both unused,
+    // with one used set per part of the limb.
+    private void scorePairs(int i)
+    {
+        int part1 = CocoPairs[i][0];
+        int part2 = CocoPairs[i][1];
+        float[] scores = this.scores[i];
+        float[] paf_first = this.paf_first[i];
+        float[] paf_second = this.paf_second[i];
+        float max_length_squared = max_limb_length * max_limb_length;
+        pairs_count[i] = 0;
+        pairs_final_count[i] = 0;
+
+        for (int p1 = 0; p1 < coordinates_count[part1]; p1++) {
+            int p1x = HeatmapNms.row(coordinates[part1][p1]);
+            int p1y = HeatmapNms.column(coordinates[part1][p1]);
+            for (int p2 = 0; p2 < coordinates_count[part2]; p2++) {
+                int p2x = HeatmapNms.row(coordinates[part2][p2]);
+                int p2y = HeatmapNms.column(coordinates[part2][p2]);
+                float dx = p2x - p1x;
+                float dy = p2y - p1y;
+                float length_squared = dx * dx + dy * dy;
+                if (length_squared > max_length_squared) {
+                    continue;
+                }
+                float normVec = (float) Math.sqrt(length_squared);
+                // both parts on the same cell, no direction to score but the other candidates still are
+                if (normVec < 0.0001f) {
+                    continue;
+                }
+
+                int count = 0;
+                float score = 0.0f;
+                float vx = dx / normVec;
+                float vy = dy / normVec;
+                for (int t = 0; t < 10; t++) {
+                    int tx = (int) ((float) p1x + (t * dx / 9) + 0.5);
+                    int ty = (int) ((float) p1y + (t * dy / 9) + 0.5);
+                    int location = tx * paf_stride * MapWidth + ty * paf_stride + paf_offset + output_offset;
+                    paf_first[t] = output_tensor.get(location + CocoPairsNetwork[i][0]);
+                    paf_second[t] = output_tensor.get(location + CocoPairsNetwork[i][1]);
+                }
+                kernels.project(paf_first, paf_second, vy, vx, scores, 10);
+                for (int h = 0; h < 10; h++) {
+                    if (scores[h] > Local_PAF_Threshold) {
+                        count += 1;
+                        score += scores[h];
+                    }
+                }
+                if (score > Part_Score_Threshold && count >= PAF_Count_Threshold) {
+                    appendPair(i, p1, p2, score);
+                }
+            }
+        }
+
+        int size = pairs_count[i];
+        long[] keys = pair_keys[i];
+        float[] pairs_scores = this.pairs_scores[i];
+        for (int m = 0; m < size; m++) {
+            keys[m] = ((long) (Integer.MAX_VALUE - Float.floatToIntBits(pairs_scores[m])) << 32) | m;
+        }
+        Arrays.sort(keys, 0, size);
+
+        int[] pairs = this.pairs[i];
+        BitSet used_first = this.used_first[i];
+        BitSet used_second = this.used_second[i];
+        used_first.clear();
+        used_second.clear();
+        for (int k = 0; k < size; k++) {
+            int m = (int) keys[k];
+            int ip1 = pairs[m * 2];
+            int ip2 = pairs[m * 2 + 1];
+            if (!used_first.get(ip1) && !used_second.get(ip2)) {
+                int n = pairs_final_count[i]++;
+                pairs_final[i][n * 2] = ip1;
+                pairs_final[i][n * 2 + 1] = ip2;
+                pairs_scores_final[i][n] = pairs_scores[m];
+                used_first.set(ip1);
+                used_second.set(ip2);
+            }
+        }
+    }
+
+    private void appendPair(int i, int p1, int p2, float score)
+    {
+        int size = pairs_count[i];
+        if (size == pairs_scores[i].length) {
+            pairs[i] = Arrays.copyOf(pairs[i], size * 4);
+            pairs_scores[i] = Arrays.copyOf(pairs_scores[i], size * 2);
+            pair_keys[i] = new long[size * 2];
+            pairs_final[i] = Arrays.copyOf(pairs_final[i], size * 4);
+            pairs_scores_final[i] = Arrays.copyOf(pairs_scores_final[i], size * 2);
+        }
+        pairs[i][size * 2] = p1;
+        pairs[i][size * 2 + 1] = p2;
+        pairs_scores[i][size] = score;
+        pairs_count[i] = size + 1;
+    }
+
+    // Every candidate a human has taken is looked up in owner[part][candidate], so a pair finds its human in constant
+    // time instead of scanning all humans. When the two candidates of a pair already belong to two different humans
+    // with no part in common, those partial skeletons are the same person and are merged with union-find; the lower
+    // index survives, so the humans keep the order the scan would have given them. Two humans that overlap are not
+    // merged and the pair goes to the lower one, as before.
+    public List<Human> assembleHumans()
+    {
+        long start = System.nanoTime();
+        humans_count = 0;
+        humans_final.clear();
+        for (int part = 0; part < HeatMapCount - 1; part++) {
+            Arrays.fill(owner[part], 0, coordinates_count[part], -1);
+        }
+        for (int i = 0; i < MaxPairCount; i++) {
+            int p1 = CocoPairs[i][0];
+            int p2 = CocoPairs[i][1];
+            for (int j = 0; j < pairs_final_count[i]; j++) {
+                int ip1 = pairs_final[i][j * 2];
+                int ip2 = pairs_final[i][j * 2 + 1];
+                int h1 = owner(p1, ip1);
+                int h2 = owner(p2, ip2);
+                int h;
+                if (h1 < 0 && h2 < 0) {
+                    h = nextHuman();
+                } else if (h1 < 0 || h2 < 0 || h1 == h2) {
+                    h = Math.max(h1, h2);
+                } else {
+                    h = merge(Math.min(h1, h2), Math.max(h1, h2));
+                }
+                assign(humans[h], p1, ip1, p2, ip2);
+                owner[p1][ip1] = h;
+                owner[p2][ip2] = h;
+            }
+        }
+
+        // remove people with too few parts and the ones merged into another
+        for (int i = 0; i < humans_count; i++) {
+            if (parent[i] != i) {
+                continue;
+            }
+            int human_part_count = 0;
+            for (int j = 0; j < HeatMapCount - 1; j++) {
+                if (humans[i].coords_index_assigned[j]) {
+                    human_part_count += 1;
+                }
+            }
+            if (human_part_count > Part_Count_Threshold) {
+                humans_final.add(humans[i]);
+            }
+        }
+
+        PoseMetrics.Global.humansDetected(humans_final.size());
+        PoseMetrics.Global.record(PoseMetrics.Stage.Assembly, System.nanoTime() - start);
+        return humans_final;
+    }
+
+    // the surviving human that currently holds the candidate, -1 when none does
+    private int owner(int part, int candidate)
+    {
+        int h = owner[part][candidate];
+        if (h < 0) {
+            return -1;
+        }
+        while (parent[h] != h) {
+            parent[h] = parent[parent[h]];
+            h = parent[h];
+        }
+        Human human = humans[h];
+        return human.coords_index_assigned[part] && human.coords_index_set[part] == candidate ? h : -1;
+    }
+
+    // folds the parts of the second human into the first when they are disjoint, returns the human that gets the pair
+    private int merge(int keep, int absorbed)
+    {
+        Human target = humans[keep];
+        Human source = humans[absorbed];
+        for (int part = 0; part < HeatMapCount - 1; part++) {
+            if (target.coords_index_assigned[part] && source.coords_index_assigned[part]) {
+                return keep;
+            }
+        }
+        for (int part = 0; part < HeatMapCount - 1; part++) {
+            if (source.coords_index_assigned[part]) {
+                target.parts_coords[part][0] = source.parts_coords[part][0];
+                target.parts_coords[part][1] = source.parts_coords[part][1];
+                target.coords_index_set[part] = source.coords_index_set[part];
+                target.coords_index_assigned[part] = true;
+            }
+        }
+        parent[absorbed] = keep;
+        return keep;
+    }
+
+    private void assign(Human human, int p1, int ip1, int p2, int ip2)
+    {
+        human.parts_coords[p1][0] = HeatmapNms.row(coordinates[p1][ip1]);
+        human.parts_coords[p1][1] = HeatmapNms.column(coordinates[p1][ip1]);
+        human.parts_coords[p2][0] = HeatmapNms.row(coordinates[p2][ip2]);
+        human.parts_coords[p2][1] = HeatmapNms.column(coordinates[p2][ip2]);
+        human.coords_index_set[p1] = ip1;
+        human.coords_index_set[p2] = ip2;
+        human.coords_index_assigned[p1] = true;
+        human.coords_index_assigned[p2] = true;
+    }
+
+    // clears the next spare human and returns its index
+    private int nextHuman()
+    {
+        if (humans_count == humans.length) {
+            humans = Arrays.copyOf(humans, Math.max(8, humans.length * 2));
+            for (int i = humans_count; i < humans.length; i++) {
+                humans[i] = new Human();
+            }
+            parent = Arrays.copyOf(parent, humans.length);
+        }
+        parent[humans_count] = humans_count;
+        humans[humans_count].clear();
+        return humans_count++;
+    }
+
+    // preallocated and reinitialized every frame, a stage task runs all of its children, a child handles one part or limb
+    private class StageTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final boolean peaks;
+        private final int index;
+        private final StageTask[] children;
+
+        StageTask(boolean peaks, int index, StageTask[] children)
+        {
+            this.peaks = peaks;
+            this.index = index;
+            this.children = children;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (children != null) {
+                for (StageTask child : children) {
+                    child.reinitialize();
+                }
+                ForkJoinTask.invokeAll(children);
+            } else if (peaks) {
+                findPeaks(index);
+            } else {
+                scorePairs(index);
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package logic;
+
+import logic.metrics.PoseMetrics;
+import logic.tensorflow.TensorFlowInferenceInterface;
+import org.opencv.core.Core;
+import org.tensorflow.Graph;
+
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+
+// Brings up everything the live view needs on background threads: the OpenCV natives and the camera on one side,
+// the TensorFlow natives, the model import and the warm-up runs on the other. The returned future completes once
+// both sides are done and the first real frame no longer pays for TensorFlow's lazy kernel setup.
+public class PoseStartup
+{
+    private final Path modelFile;
+    private final String colorChannels;
+    private final int width;
+    private final int height;
+    private final int cameraWidth;
+    private final int cameraHeight;
+    private final int cameraIndex;
+    private final int warmUpRuns;
+
+    private Graph graph;
+    private PoseDetector detector;
+    private Camera camera;
+
+    public PoseStartup(Path modelFile, String colorChannels, int width, int height,
+                       int cameraWidth, int cameraHeight, int cameraIndex, int warmUpRuns)
+    {
+        this.modelFile = modelFile;
+        this.colorChannels = colorChannels;
+        this.width = width;
+        this.height = height;
+        this.cameraWidth = cameraWidth;
+        this.cameraHeight = cameraHeight;
+        this.cameraIndex = cameraIndex;
+        this.warmUpRuns = warmUpRuns;
+    }
+
+    public CompletableFuture<PoseStartup> start()
+    {
+        long start = System.nanoTime();
+        CompletableFuture<Camera> cameraReady = CompletableFuture.supplyAsync(() -> {
+            System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+            return new Camera(cameraWidth, cameraHeight, cameraIndex);
+        });
+        CompletableFuture<PoseDetector> detectorReady = CompletableFuture.supplyAsync(() -> {
+            graph = TensorFlowInferenceInterface.importGraph(modelFile);
+            PoseDetector detector = new PoseDetector(new TensorFlowInferenceInterface(graph, null), colorChannels, width, height);
+            long warmUpStart = System.nanoTime();
+            detector.warmUp(warmUpRuns);
+            System.out.println("Warm-up (" + warmUpRuns + " runs) took " + (System.nanoTime() - warmUpStart) / 1000000 + "ms");
+            return detector;
+        });
+
+        return cameraReady.thenCombine(detectorReady, (camera, detector) -> {
+            this.camera = camera;
+            this.detector = detector;
+            PoseMetrics.Global.markReady();
+            System.out.println("Startup took " + (System.nanoTime() - start) / 1000000 + "ms");
+            return this;
+        });
+    }
+
+    public PoseDetector getDetector()
+    {
+        return detector;
+    }
+
+    // opened during startup, may be null or closed when no camera was found
+    public Camera getCamera()
+    {
+        return camera;
+    }
+
+    public void close()
+    {
+        if (detector != null) {
+            detector.close();
+        }
+        if (graph != null) {
+            graph.close();
+        }
+    }
+}
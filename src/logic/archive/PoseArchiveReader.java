@@ -0,0 +1,270 @@
+package logic.archive;
+
+import logic.Human;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// Layout, little endian:
+//   header (32 bytes)  magic "POSE", version, parts per human, map width, map height, frame count, index offset
+//                      (both 0 until the writer is closed)
+//   frames             varint human count, then per human a 24 bit mask of the assigned parts followed by zigzag
+//                      varint (row, column) deltas of every assigned part to the previous assigned part
+//   index              one long file offset per frame
+// Nothing is loaded into the heap: the index and a window of the frames are memory mapped, seek() is O(1) and
+// sequential next() calls only decode into the reader's own arrays. An archive without an index, from a writer that
+// never got to close(), is walked once to rebuild the index in the heap, a partly written last frame is left out.
+public class PoseArchiveReader implements AutoCloseable
+{
+    static final int Magic = 0x45534F50;
+    static final short Version = 1;
+    static final int HeaderSize = 32;
+    static final int PartCount = 18;
+    private final long WindowSize = 256L * 1024 * 1024;
+
+    private final FileChannel channel;
+    private final int mapWidth;
+    private final int mapHeight;
+    private final long frameCount;
+    private final long framesEnd;
+    private final LongBuffer index;
+    private MappedByteBuffer window;
+    private long windowStart;
+    private long windowEnd;
+    private long scanEnd;
+
+    private long frame = -1;
+    private int cursor;
+    private int humanCount;
+    private int[] masks = new int[16];
+    private int[] rows = new int[16 * PartCount];
+    private int[] columns = new int[16 * PartCount];
+
+    public PoseArchiveReader(Path file) throws IOException
+    {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HeaderSize);
+        header.order(ByteOrder.LITTLE_ENDIAN);
+        if (header.getInt(0) != Magic || header.getShort(4) != Version || header.getShort(6) != PartCount) {
+            channel.close();
+            throw new IOException("Not a pose archive (version " + Version + "): " + file);
+        }
+        mapWidth = header.getInt(8);
+        mapHeight = header.getInt(12);
+        long indexOffset = header.getLong(24);
+        if (indexOffset == 0) {
+            index = scan();
+            frameCount = index.limit();
+            framesEnd = scanEnd;
+        } else {
+            frameCount = header.getLong(16);
+            if (indexOffset < HeaderSize || indexOffset + frameCount * 8 > channel.size()) {
+                channel.close();
+                throw new IOException("Pose archive is truncated, the index of " + frameCount + " frames doesn't fit: " + file);
+            }
+            index = channel.map(FileChannel.MapMode.READ_ONLY, indexOffset, frameCount * 8).order(ByteOrder.LITTLE_ENDIAN)
+                    .asLongBuffer();
+            framesEnd = indexOffset;
+        }
+    }
+
+    public int mapWidth()
+    {
+        return mapWidth;
+    }
+
+    public int mapHeight()
+    {
+        return mapHeight;
+    }
+
+    public long frameCount()
+    {
+        return frameCount;
+    }
+
+    // the frame the accessors below describe, -1 before the first seek / next
+    public long frame()
+    {
+        return frame;
+    }
+
+    public boolean next() throws IOException
+    {
+        if (frame + 1 >= frameCount) {
+            return false;
+        }
+        seek(frame + 1);
+        return true;
+    }
+
+    public void seek(long frame) throws IOException
+    {
+        if (frame < 0 || frame >= frameCount) {
+            throw new IndexOutOfBoundsException("Frame " + frame + " of " + frameCount);
+        }
+        long start = index.get((int) frame);
+        long end = frame + 1 < frameCount ? index.get((int) frame + 1) : framesEnd;
+        if (start < windowStart || end > windowEnd) {
+            long size = Math.min(Math.max(WindowSize, end - start), framesEnd - start);
+            window = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+            windowStart = start;
+            windowEnd = start + size;
+        }
+        decode((int) (start - windowStart));
+        this.frame = frame;
+    }
+
+    public int humanCount()
+    {
+        return humanCount;
+    }
+
+    public boolean isAssigned(int human, int part)
+    {
+        return (masks[human] & (1 << part)) != 0;
+    }
+
+    public int row(int human, int part)
+    {
+        return rows[human * PartCount + part];
+    }
+
+    public int column(int human, int part)
+    {
+        return columns[human * PartCount + part];
+    }
+
+    public void copyTo(int human, Human target)
+    {
+        target.clear();
+        for (int part = 0; part < PartCount; part++) {
+            if (isAssigned(human, part)) {
+                target.parts_coords[part][0] = row(human, part);
+                target.parts_coords[part][1] = column(human, part);
+                target.coords_index_assigned[part] = true;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        channel.close();
+    }
+
+    // the offsets of the whole frames from the header to the end of the file, scanEnd is set to the end of the last one
+    private LongBuffer scan() throws IOException
+    {
+        long[] offsets = new long[1024];
+        int count = 0;
+        long size = channel.size();
+        long position = HeaderSize;
+        while (position < size) {
+            int length = position >= windowStart && position < windowEnd ? frameLength((int) (position - windowStart)) : -1;
+            if (length < 0) {
+                // a frame that doesn't fit a window starting at it runs past the end of the file
+                if (windowStart == position) {
+                    break;
+                }
+                window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WindowSize, size - position));
+                windowStart = position;
+                windowEnd = position + window.limit();
+                continue;
+            }
+            if (count == offsets.length) {
+                offsets = Arrays.copyOf(offsets, count * 2);
+            }
+            offsets[count++] = position;
+            position += length;
+        }
+        scanEnd = position;
+        return LongBuffer.wrap(offsets, 0, count).slice();
+    }
+
+    // the size of the frame at position in the window, -1 when it runs past the window's end
+    private int frameLength(int position)
+    {
+        int limit = window.limit();
+        cursor = position;
+        int humans = 0;
+        int shift = 0;
+        byte b;
+        do {
+            if (cursor >= limit) {
+                return -1;
+            }
+            b = window.get(cursor++);
+            humans |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        for (int h = 0; h < humans; h++) {
+            if (cursor + 3 > limit) {
+                return -1;
+            }
+            int mask = (window.get(cursor) & 0xFF) | (window.get(cursor + 1) & 0xFF) << 8 | (window.get(cursor + 2) & 0xFF) << 16;
+            cursor += 3;
+            for (int varint = 0; varint < 2 * Integer.bitCount(mask); varint++) {
+                do {
+                    if (cursor >= limit) {
+                        return -1;
+                    }
+                } while (window.get(cursor++) < 0);
+            }
+        }
+        return cursor - position;
+    }
+
+    private void decode(int position)
+    {
+        cursor = position;
+        humanCount = readVarint();
+        if (masks.length < humanCount) {
+            masks = new int[humanCount * 2];
+            rows = new int[humanCount * 2 * PartCount];
+            columns = new int[humanCount * 2 * PartCount];
+        }
+        for (int h = 0; h < humanCount; h++) {
+            int mask = (window.get(cursor) & 0xFF) | (window.get(cursor + 1) & 0xFF) << 8 | (window.get(cursor + 2) & 0xFF) << 16;
+            cursor += 3;
+            masks[h] = mask;
+            int row = 0;
+            int column = 0;
+            for (int part = 0; part < PartCount; part++) {
+                if ((mask & (1 << part)) != 0) {
+                    row += unzigzag(readVarint());
+                    column += unzigzag(readVarint());
+                    rows[h * PartCount + part] = row;
+                    columns[h * PartCount + part] = column;
+                } else {
+                    rows[h * PartCount + part] = 0;
+                    columns[h * PartCount + part] = 0;
+                }
+            }
+        }
+    }
+
+    private int readVarint()
+    {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = window.get(cursor++);
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    private static int unzigzag(int value)
+    {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
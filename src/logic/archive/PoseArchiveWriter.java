@@ -0,0 +1,141 @@
+package logic.archive;
+
+import logic.Human;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+// Appends frames of poses to a compact archive, see PoseArchiveReader for the layout. Frames are only ever appended;
+// the frame-offset index goes after the last frame and the header is completed in close(). The frames don't depend on
+// either, an archive whose process died before close() is still readable up to its last whole frame.
+public class PoseArchiveWriter implements AutoCloseable
+{
+    private final FileChannel channel;
+    private final int mapWidth;
+    private final int mapHeight;
+    private ByteBuffer frame = ByteBuffer.allocateDirect(4096).order(ByteOrder.LITTLE_ENDIAN);
+    private long[] offsets = new long[1024];
+    private long frameCount;
+    private long position;
+
+    public PoseArchiveWriter(Path file, int mapWidth, int mapHeight) throws IOException
+    {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+        this.mapWidth = mapWidth;
+        this.mapHeight = mapHeight;
+        writeFully(header(0, 0));
+    }
+
+    public long frameCount()
+    {
+        return frameCount;
+    }
+
+    public void append(List<Human> humans) throws IOException
+    {
+        // worst case is 3 mask bytes plus two 5 byte varints per part
+        int worstCase = 5 + humans.size() * (3 + PoseArchiveReader.PartCount * 10);
+        if (frame.capacity() < worstCase) {
+            frame = ByteBuffer.allocateDirect(Math.max(worstCase, frame.capacity() * 2)).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        frame.clear();
+        writeVarint(frame, humans.size());
+        for (Human human : humans) {
+            int mask = 0;
+            for (int part = 0; part < PoseArchiveReader.PartCount; part++) {
+                if (human.coords_index_assigned[part]) {
+                    mask |= 1 << part;
+                }
+            }
+            frame.put((byte) mask).put((byte) (mask >>> 8)).put((byte) (mask >>> 16));
+
+            // every assigned part is stored as a zigzag delta to the previous assigned part of the same human
+            int row = 0;
+            int column = 0;
+            for (int part = 0; part < PoseArchiveReader.PartCount; part++) {
+                if (human.coords_index_assigned[part]) {
+                    writeVarint(frame, zigzag(human.parts_coords[part][0] - row));
+                    writeVarint(frame, zigzag(human.parts_coords[part][1] - column));
+                    row = human.parts_coords[part][0];
+                    column = human.parts_coords[part][1];
+                }
+            }
+        }
+        frame.flip();
+
+        if (frameCount == offsets.length) {
+            offsets = Arrays.copyOf(offsets, offsets.length * 2);
+        }
+        offsets[(int) frameCount++] = position;
+        writeFully(frame);
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        try {
+            long indexOffset = position;
+            ByteBuffer index = ByteBuffer.allocateDirect(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+            for (int i = 0; i < frameCount; i++) {
+                if (index.remaining() < 8) {
+                    index.flip();
+                    writeFully(index);
+                    index.clear();
+                }
+                index.putLong(offsets[i]);
+            }
+            index.flip();
+            writeFully(index);
+
+            ByteBuffer header = header(frameCount, indexOffset);
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            channel.force(false);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private ByteBuffer header(long frames, long indexOffset)
+    {
+        ByteBuffer header = ByteBuffer.allocate(PoseArchiveReader.HeaderSize).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(PoseArchiveReader.Magic);
+        header.putShort(PoseArchiveReader.Version);
+        header.putShort((short) PoseArchiveReader.PartCount);
+        header.putInt(mapWidth);
+        header.putInt(mapHeight);
+        header.putLong(frames);
+        header.putLong(indexOffset);
+        header.flip();
+        return header;
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException
+    {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer);
+        }
+    }
+
+    private static int zigzag(int value)
+    {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static void writeVarint(ByteBuffer buffer, int value)
+    {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+}
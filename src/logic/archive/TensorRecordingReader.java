@@ -0,0 +1,129 @@
+package logic.archive;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Layout, little endian:
+//   header (32 bytes)  magic "PTNS", version, reserved, map width, map height, channels, reserved, frame count
+//                      (0 until the writer is closed)
+//   frames             map height * map width * channels floats each, in the network's (row, column, channel) order
+// Frames have a fixed size, so there is no index: a window of whole frames is memory mapped and tensor() / offset()
+// point into it, ready for PosePostProcessor.process(FloatBuffer, int) without a copy. The frame count comes from the
+// file size, a partly written last frame is left out.
+public class TensorRecordingReader implements AutoCloseable
+{
+    static final int Magic = 0x534E5450;
+    static final short Version = 1;
+    static final int HeaderSize = 32;
+    private final long WindowSize = 256L * 1024 * 1024;
+
+    private final FileChannel channel;
+    private final int mapWidth;
+    private final int mapHeight;
+    private final int channels;
+    private final long frameCount;
+    private final long frameBytes;
+    private final long framesPerWindow;
+    private FloatBuffer window;
+    private long windowFirst = -1;
+    private long frame = -1;
+
+    public TensorRecordingReader(Path file) throws IOException
+    {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HeaderSize);
+        header.order(ByteOrder.LITTLE_ENDIAN);
+        if (header.getInt(0) != Magic || header.getShort(4) != Version) {
+            channel.close();
+            throw new IOException("Not a tensor recording (version " + Version + "): " + file);
+        }
+        mapWidth = header.getInt(8);
+        mapHeight = header.getInt(12);
+        channels = header.getInt(16);
+        if (mapWidth <= 0 || mapHeight <= 0 || channels <= 0) {
+            channel.close();
+            throw new IOException("Invalid tensor shape " + mapWidth + "x" + mapHeight + "x" + channels + ": " + file);
+        }
+        frameBytes = (long) mapWidth * mapHeight * channels * 4;
+        framesPerWindow = Math.max(1, WindowSize / frameBytes);
+        frameCount = Math.max(0, channel.size() - HeaderSize) / frameBytes;
+        // a count of 0 is a recording whose writer never got to close()
+        long written = header.getLong(24);
+        if (written != 0 && written != frameCount) {
+            channel.close();
+            throw new IOException("Tensor recording holds " + frameCount + " frames, its header says " + written + ": " + file);
+        }
+    }
+
+    public int mapWidth()
+    {
+        return mapWidth;
+    }
+
+    public int mapHeight()
+    {
+        return mapHeight;
+    }
+
+    public int channels()
+    {
+        return channels;
+    }
+
+    public long frameCount()
+    {
+        return frameCount;
+    }
+
+    // the frame tensor() and offset() point at, -1 before the first seek / next
+    public long frame()
+    {
+        return frame;
+    }
+
+    public boolean next() throws IOException
+    {
+        if (frame + 1 >= frameCount) {
+            return false;
+        }
+        seek(frame + 1);
+        return true;
+    }
+
+    public void seek(long frame) throws IOException
+    {
+        if (frame < 0 || frame >= frameCount) {
+            throw new IndexOutOfBoundsException("Frame " + frame + " of " + frameCount);
+        }
+        if (windowFirst < 0 || frame < windowFirst || frame >= windowFirst + framesPerWindow) {
+            long frames = Math.min(framesPerWindow, frameCount - frame);
+            MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, HeaderSize + frame * frameBytes, frames * frameBytes);
+            bytes.order(ByteOrder.LITTLE_ENDIAN);
+            window = bytes.asFloatBuffer();
+            windowFirst = frame;
+        }
+        this.frame = frame;
+    }
+
+    // read-only view on the mapped window that holds the current frame, use absolute gets from offset()
+    public FloatBuffer tensor()
+    {
+        return window;
+    }
+
+    public int offset()
+    {
+        return (int) ((frame - windowFirst) * (frameBytes / 4));
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        channel.close();
+    }
+}
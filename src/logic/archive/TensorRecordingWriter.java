@@ -0,0 +1,91 @@
+package logic.archive;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Appends the fetched network output of every frame to a tensor recording, see TensorRecordingReader for the layout.
+// The frame count in the header is completed in close(), it is only a check: the reader counts the frames in the file,
+// so the recording of a process that was killed is still readable up to its last whole frame.
+public class TensorRecordingWriter implements AutoCloseable
+{
+    private final FileChannel channel;
+    private final int mapWidth;
+    private final int mapHeight;
+    private final int channels;
+    private final int frameSize;
+    private final ByteBuffer frame;
+    private final FloatBuffer frameFloats;
+    private long frameCount;
+
+    public TensorRecordingWriter(Path file, int mapWidth, int mapHeight, int channels) throws IOException
+    {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+        this.mapWidth = mapWidth;
+        this.mapHeight = mapHeight;
+        this.channels = channels;
+        this.frameSize = mapWidth * mapHeight * channels;
+        this.frame = ByteBuffer.allocateDirect(frameSize * 4).order(ByteOrder.LITTLE_ENDIAN);
+        this.frameFloats = frame.asFloatBuffer();
+        writeFully(header(0));
+    }
+
+    public long frameCount()
+    {
+        return frameCount;
+    }
+
+    // one frame of (mapHeight, mapWidth, channels) floats starting at offset, the tensor's position is not touched
+    public void append(FloatBuffer tensor, int offset) throws IOException
+    {
+        FloatBuffer source = tensor.duplicate();
+        source.limit(offset + frameSize);
+        source.position(offset);
+        frameFloats.clear();
+        frameFloats.put(source);
+        frame.clear();
+        writeFully(frame);
+        frameCount++;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        try {
+            ByteBuffer header = header(frameCount);
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            channel.force(false);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private ByteBuffer header(long frames)
+    {
+        ByteBuffer header = ByteBuffer.allocate(TensorRecordingReader.HeaderSize).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(TensorRecordingReader.Magic);
+        header.putShort(TensorRecordingReader.Version);
+        header.putShort((short) 0);
+        header.putInt(mapWidth);
+        header.putInt(mapHeight);
+        header.putInt(channels);
+        header.putInt(0);
+        header.putLong(frames);
+        header.flip();
+        return header;
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException
+    {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package logic.kernels;
+
+// Picks the kernels once per JVM: logic.kernels.VectorKernels from the src-jdk16 source root when it was compiled and
+// the jdk.incubator.vector module is present (--add-modules jdk.incubator.vector), ScalarKernels otherwise.
+// -Dpose.kernels=scalar forces the fallback.
+public final class Kernels
+{
+    public static final PoseKernels Selected = select();
+
+    private Kernels()
+    {
+    }
+
+    private static PoseKernels select()
+    {
+        if ("scalar".equals(System.getProperty("pose.kernels"))) {
+            return new ScalarKernels();
+        }
+        try {
+            return (PoseKernels) Class.forName("logic.kernels.VectorKernels").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // not compiled in or the module is missing
+            return new ScalarKernels();
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package logic.kernels;
+
+// The inner loops of preprocessing, NMS and PAF scoring. Every implementation must give bit-identical results to
+// ScalarKernels, see Kernels for how one is picked and tools.KernelCheck for the comparison.
+public interface PoseKernels
+{
+    // target[i * 3 + channels[0]] = red, [i * 3 + channels[1]] = green, [i * 3 + channels[2]] = blue of pixels[i], i < count
+    void unpackPixels(int[] pixels, int count, int[] channels, float[] target);
+
+    // target[i + channels[c]] = bytes[i + c] as unsigned, for every pixel i (a multiple of 3) below length
+    void unpackBytes(byte[] bytes, int length, int[] channels, float[] target);
+
+    // target[offset + k] = max(0, src[offset + k - before ... offset + min(k + after, width - 1)]) for from <= k < to
+    void windowMax(float[] src, int offset, int from, int to, int before, int after, int width, float[] target);
+
+    // max[k] = max(max[k], src[offset + k]) for from <= k < to
+    void maxInto(float[] max, float[] src, int offset, int from, int to);
+
+    // appends (row << 16 | k) to peaks for every from <= k < to with max[k] > threshold and max[k] == plane[offset + k],
+    // in ascending k, returns the new count
+    int collectPeaks(float[] max, float[] plane, int offset, int from, int to, float threshold, int row, int[] peaks, int count);
+
+    // out[t] = vy * x[t] + vx * y[t], rounded after the multiplication and after the addition like the scalar code
+    void project(float[] x, float[] y, float vy, float vx, float[] out, int count);
+}
@@ -0,0 +1,74 @@
+package logic.kernels;
+
+// the plain loops, also the reference every other implementation has to match
+public class ScalarKernels implements PoseKernels
+{
+    @Override
+    public void unpackPixels(int[] pixels, int count, int[] channels, float[] target)
+    {
+        for (int i = 0; i < count; ++i) {
+            final int val = pixels[i];
+            target[i * 3 + channels[0]] = (val >> 16) & 0xFF; //R
+            target[i * 3 + channels[1]] = (val >> 8) & 0xFF;  //G
+            target[i * 3 + channels[2]] = val & 0xFF;         //B
+        }
+    }
+
+    @Override
+    public void unpackBytes(byte[] bytes, int length, int[] channels, float[] target)
+    {
+        for (int i = 0; i < length; i += 3) {
+            target[i + channels[0]] = bytes[i] & 0xFF;
+            target[i + channels[1]] = bytes[i + 1] & 0xFF;
+            target[i + channels[2]] = bytes[i + 2] & 0xFF;
+        }
+    }
+
+    @Override
+    public void windowMax(float[] src, int offset, int from, int to, int before, int after, int width, float[] target)
+    {
+        for (int k = from; k < to; k++) {
+            int end = Math.min(k + after, width - 1);
+            float max_value = 0;
+            for (int kk = k - before; kk <= end; kk++) {
+                float value = src[offset + kk];
+                if (value > max_value) {
+                    max_value = value;
+                }
+            }
+            target[offset + k] = max_value;
+        }
+    }
+
+    @Override
+    public void maxInto(float[] max, float[] src, int offset, int from, int to)
+    {
+        for (int k = from; k < to; k++) {
+            float value = src[offset + k];
+            if (value > max[k]) {
+                max[k] = value;
+            }
+        }
+    }
+
+    @Override
+    public int collectPeaks(float[] max, float[] plane, int offset, int from, int to, float threshold, int row, int[] peaks, int count)
+    {
+        for (int k = from; k < to; k++) {
+            float max_value = max[k];
+            if (max_value > threshold && max_value == plane[offset + k]) {
+                peaks[count++] = (row << 16) | k;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public void project(float[] x, float[] y, float vy, float vx, float[] out, int count)
+    {
+        for (int t = 0; t < count; t++) {
+            out[t] = vy * x[t];
+            out[t] += vx * y[t];
+        }
+    }
+}
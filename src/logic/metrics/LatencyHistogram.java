@@ -0,0 +1,90 @@
+package logic.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Lock-free log-linear histogram of nanosecond durations: every power of two is split into 8 linear sub-buckets, so
+// a reported percentile is at most 12.5% above the true value, from 1 ns up to Long.MAX_VALUE. record() is a few
+// arithmetic operations and one atomic increment, safe to call from any number of threads.
+public class LatencyHistogram
+{
+    private static final int SubBucketBits = 3;
+    private static final int SubBucketCount = 1 << SubBucketBits;
+    private static final int BucketCount = (64 - SubBucketBits) * SubBucketCount + SubBucketCount;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BucketCount);
+    private final LongAdder sum = new LongAdder();
+
+    public void record(long nanos)
+    {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        buckets.incrementAndGet(index(nanos));
+        sum.add(nanos);
+    }
+
+    // counts taken bucket by bucket while other threads keep recording, good enough for monitoring
+    public LatencySnapshot snapshot()
+    {
+        long[] counts = new long[BucketCount];
+        long count = 0;
+        int highest = 0;
+        for (int i = 0; i < BucketCount; i++) {
+            counts[i] = buckets.get(i);
+            count += counts[i];
+            if (counts[i] != 0) {
+                highest = i;
+            }
+        }
+        return new LatencySnapshot(count, (count == 0 ? 0 : sum.sum() / count) / 1000, percentile(counts, count, 0.50) / 1000,
+                percentile(counts, count, 0.95) / 1000, percentile(counts, count, 0.99) / 1000,
+                (count == 0 ? 0 : upperBound(highest)) / 1000);
+    }
+
+    public void reset()
+    {
+        for (int i = 0; i < BucketCount; i++) {
+            buckets.set(i, 0);
+        }
+        sum.reset();
+    }
+
+    // values below 8 get a bucket each, above that the three bits after the leading one pick the sub-bucket
+    static int index(long nanos)
+    {
+        if (nanos < SubBucketCount) {
+            return (int) nanos;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int subBucket = (int) (nanos >>> (exponent - SubBucketBits)) & (SubBucketCount - 1);
+        return (exponent - SubBucketBits + 1) * SubBucketCount + subBucket;
+    }
+
+    static long upperBound(int index)
+    {
+        if (index < SubBucketCount) {
+            return index;
+        }
+        int exponent = index / SubBucketCount + SubBucketBits - 1;
+        long subBucket = index % SubBucketCount;
+        long lower = (1L << exponent) | (subBucket << (exponent - SubBucketBits));
+        return lower + (1L << (exponent - SubBucketBits)) - 1;
+    }
+
+    private static long percentile(long[] counts, long count, double quantile)
+    {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(count * quantile);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return upperBound(i);
+            }
+        }
+        return upperBound(counts.length - 1);
+    }
+}
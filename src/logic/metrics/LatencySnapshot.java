@@ -0,0 +1,62 @@
+package logic.metrics;
+
+import java.beans.ConstructorProperties;
+
+// one histogram at one point in time, all durations in microseconds; shows up in JMX as composite data
+public class LatencySnapshot
+{
+    private final long count;
+    private final long meanMicros;
+    private final long p50Micros;
+    private final long p95Micros;
+    private final long p99Micros;
+    private final long maxMicros;
+
+    @ConstructorProperties({"count", "meanMicros", "p50Micros", "p95Micros", "p99Micros", "maxMicros"})
+    public LatencySnapshot(long count, long meanMicros, long p50Micros, long p95Micros, long p99Micros, long maxMicros)
+    {
+        this.count = count;
+        this.meanMicros = meanMicros;
+        this.p50Micros = p50Micros;
+        this.p95Micros = p95Micros;
+        this.p99Micros = p99Micros;
+        this.maxMicros = maxMicros;
+    }
+
+    public long getCount()
+    {
+        return count;
+    }
+
+    public long getMeanMicros()
+    {
+        return meanMicros;
+    }
+
+    public long getP50Micros()
+    {
+        return p50Micros;
+    }
+
+    public long getP95Micros()
+    {
+        return p95Micros;
+    }
+
+    public long getP99Micros()
+    {
+        return p99Micros;
+    }
+
+    public long getMaxMicros()
+    {
+        return maxMicros;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("n=%d mean=%dus p50=%dus p95=%dus p99=%dus max=%dus",
+                count, meanMicros, p50Micros, p95Micros, p99Micros, maxMicros);
+    }
+}
@@ -0,0 +1,200 @@
+package logic.metrics;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Process-wide stage timings and counters. Recording never blocks or allocates, so the stages call it on every frame
+// instead of printing; the numbers are read as p50 / p95 / p99 snapshots over JMX or with snapshot().
+public class PoseMetrics implements PoseMetricsMXBean
+{
+    public enum Stage
+    {
+        Capture, Preprocessing, Inference, Fetch, Nms, PafScoring, Assembly, Render,
+        // capture to the end of rendering, only measured by the FramePipeline
+        FrameLatency
+    }
+
+    public static final PoseMetrics Global = new PoseMetrics();
+    public static final String MBeanName = "logic.metrics:type=PoseMetrics";
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[Stage.values().length];
+    private final LongAdder frames = new LongAdder();
+    private final LongAdder droppedFrames = new LongAdder();
+    private final LongAdder gatedFrames = new LongAdder();
+    private final LongAdder detectedHumans = new LongAdder();
+    private final AtomicLong timeToReady = new AtomicLong();
+    private final AtomicLong timeToFirstPose = new AtomicLong();
+
+    public PoseMetrics()
+    {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    // registers Global with the platform MBean server, calling it again does nothing
+    public static void register()
+    {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(Global, new ObjectName(MBeanName));
+        } catch (InstanceAlreadyExistsException e) {
+            // already registered
+        } catch (JMException e) {
+            System.err.println("Failed to register the pose metrics MBean: " + e);
+        }
+    }
+
+    public void record(Stage stage, long nanos)
+    {
+        histograms[stage.ordinal()].record(nanos);
+    }
+
+    public LatencySnapshot snapshot(Stage stage)
+    {
+        return histograms[stage.ordinal()].snapshot();
+    }
+
+    public void frameCaptured()
+    {
+        frames.increment();
+    }
+
+    public void frameDropped()
+    {
+        droppedFrames.increment();
+    }
+
+    public void frameGated()
+    {
+        gatedFrames.increment();
+    }
+
+    public void humansDetected(int count)
+    {
+        detectedHumans.add(count);
+    }
+
+    // startup milestones, only the first call of each counts; reset() leaves them alone
+    public void markReady()
+    {
+        timeToReady.compareAndSet(0, sinceJvmStart());
+    }
+
+    public void markFirstPose()
+    {
+        if (timeToFirstPose.get() == 0) {
+            timeToFirstPose.compareAndSet(0, sinceJvmStart());
+        }
+    }
+
+    private static long sinceJvmStart()
+    {
+        return Math.max(1, System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime());
+    }
+
+    @Override
+    public LatencySnapshot getCapture()
+    {
+        return snapshot(Stage.Capture);
+    }
+
+    @Override
+    public LatencySnapshot getPreprocessing()
+    {
+        return snapshot(Stage.Preprocessing);
+    }
+
+    @Override
+    public LatencySnapshot getInference()
+    {
+        return snapshot(Stage.Inference);
+    }
+
+    @Override
+    public LatencySnapshot getFetch()
+    {
+        return snapshot(Stage.Fetch);
+    }
+
+    @Override
+    public LatencySnapshot getNms()
+    {
+        return snapshot(Stage.Nms);
+    }
+
+    @Override
+    public LatencySnapshot getPafScoring()
+    {
+        return snapshot(Stage.PafScoring);
+    }
+
+    @Override
+    public LatencySnapshot getAssembly()
+    {
+        return snapshot(Stage.Assembly);
+    }
+
+    @Override
+    public LatencySnapshot getRender()
+    {
+        return snapshot(Stage.Render);
+    }
+
+    @Override
+    public LatencySnapshot getFrameLatency()
+    {
+        return snapshot(Stage.FrameLatency);
+    }
+
+    @Override
+    public long getFrames()
+    {
+        return frames.sum();
+    }
+
+    @Override
+    public long getDroppedFrames()
+    {
+        return droppedFrames.sum();
+    }
+
+    @Override
+    public long getGatedFrames()
+    {
+        return gatedFrames.sum();
+    }
+
+    @Override
+    public long getDetectedHumans()
+    {
+        return detectedHumans.sum();
+    }
+
+    @Override
+    public long getTimeToReadyMillis()
+    {
+        return timeToReady.get();
+    }
+
+    @Override
+    public long getTimeToFirstPoseMillis()
+    {
+        return timeToFirstPose.get();
+    }
+
+    @Override
+    public void reset()
+    {
+        for (LatencyHistogram histogram : histograms) {
+            histogram.reset();
+        }
+        frames.reset();
+        droppedFrames.reset();
+        gatedFrames.reset();
+        detectedHumans.reset();
+    }
+}
@@ -0,0 +1,38 @@
+package logic.metrics;
+
+// read through JConsole / VisualVM under logic.metrics:type=PoseMetrics, see PoseMetrics.register()
+public interface PoseMetricsMXBean
+{
+    LatencySnapshot getCapture();
+
+    LatencySnapshot getPreprocessing();
+
+    LatencySnapshot getInference();
+
+    LatencySnapshot getFetch();
+
+    LatencySnapshot getNms();
+
+    LatencySnapshot getPafScoring();
+
+    LatencySnapshot getAssembly();
+
+    LatencySnapshot getRender();
+
+    LatencySnapshot getFrameLatency();
+
+    long getFrames();
+
+    long getDroppedFrames();
+
+    long getGatedFrames();
+
+    long getDetectedHumans();
+
+    // milliseconds from JVM start, 0 until it happened
+    long getTimeToReadyMillis();
+
+    long getTimeToFirstPoseMillis();
+
+    void reset();
+}
@@ -0,0 +1,119 @@
+package logic.model;
+
+import java.nio.file.Path;
+
+// Everything PoseDetector needs to know about one frozen graph. The graphs all produce the OpenPose layout of 19
+// heatmaps followed by 38 PAF channels per output cell, they differ in file, tensor names, stride, the channel order
+// of the float input and the type the weights are stored in.
+public class ModelDescriptor
+{
+    // Float32 graphs keep float weights, QuantizedUInt8 ones store 8 bit weights that the graph dequantizes itself
+    // (TensorFlow's quantize_weights transform), both take and produce float tensors
+    public enum DataType
+    {
+        Float32, QuantizedUInt8
+    }
+
+    private final String name;
+    private final Path file;
+    private final String inputName;
+    private final String outputName;
+    private final int stride;
+    private final String channelOrder;
+    private final DataType dataType;
+    private final int defaultWidth;
+    private final int defaultHeight;
+
+    public ModelDescriptor(String name, Path file, String inputName, String outputName, int stride, String channelOrder,
+                           DataType dataType, int defaultWidth, int defaultHeight)
+    {
+        // the registry's properties use <name>.<key>, a dot would make the name ambiguous
+        if (name.isEmpty() || name.indexOf('.') >= 0) {
+            throw new IllegalArgumentException("Model names must be non-empty and contain no dots: " + name);
+        }
+        if (stride < 1) {
+            throw new IllegalArgumentException("Stride of " + name + " must be positive: " + stride);
+        }
+        if (!channelOrder.equals("BGR") && !channelOrder.equals("RGB")) {
+            throw new IllegalArgumentException("Channel order of " + name + " must be BGR or RGB: " + channelOrder);
+        }
+        if (defaultWidth % stride != 0 || defaultHeight % stride != 0) {
+            throw new IllegalArgumentException("Default resolution of " + name + " (" + defaultWidth + "x" + defaultHeight
+                    + ") is not a multiple of the stride " + stride);
+        }
+        this.name = name;
+        this.file = file;
+        this.inputName = inputName;
+        this.outputName = outputName;
+        this.stride = stride;
+        this.channelOrder = channelOrder;
+        this.dataType = dataType;
+        this.defaultWidth = defaultWidth;
+        this.defaultHeight = defaultHeight;
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public Path getFile()
+    {
+        return file;
+    }
+
+    public String getInputName()
+    {
+        return inputName;
+    }
+
+    public String getOutputName()
+    {
+        return outputName;
+    }
+
+    // input pixels per output cell in both directions
+    public int getStride()
+    {
+        return stride;
+    }
+
+    // BGR or RGB, the order the network expects its input channels in
+    public String getChannelOrder()
+    {
+        return channelOrder;
+    }
+
+    public DataType getDataType()
+    {
+        return dataType;
+    }
+
+    public int getDefaultWidth()
+    {
+        return defaultWidth;
+    }
+
+    public int getDefaultHeight()
+    {
+        return defaultHeight;
+    }
+
+    // the same graph fed in another channel order
+    public ModelDescriptor withChannelOrder(String channelOrder)
+    {
+        return new ModelDescriptor(name, file, inputName, outputName, stride, channelOrder, dataType, defaultWidth, defaultHeight);
+    }
+
+    // the same graph loaded from another file
+    public ModelDescriptor withFile(Path file)
+    {
+        return new ModelDescriptor(name, file, inputName, outputName, stride, channelOrder, dataType, defaultWidth, defaultHeight);
+    }
+
+    @Override
+    public String toString()
+    {
+        return name + " (" + file + ", " + dataType + ", " + defaultWidth + "x" + defaultHeight + ", stride " + stride + ")";
+    }
+}
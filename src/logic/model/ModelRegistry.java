@@ -0,0 +1,158 @@
+package logic.model;
+
+import logic.PoseDetector;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeSet;
+
+// The models PoseDetector can run, by name. Three variants of the MobileNet thin graph are built in: the float graph at
+// the resolution the GUI uses, the same graph at a reduced resolution and an 8 bit weight version of it, which has to
+// be created with TensorFlow's transform_graph (--transforms=quantize_weights) before it shows up as available.
+// More models, or changes to the built-in ones, go into a properties file with <name>.<key> entries, model names
+// can't contain dots. A missing key, file included, keeps the value of the built-in model of that name, or of the
+// thin model for a new name:
+//   file, input, output, stride, channels (BGR / RGB), dtype (Float32 / QuantizedUInt8), width, height
+// The fps measured by tools.ModelBenchmark are kept next to the models in a second properties file.
+public class ModelRegistry
+{
+    public static final Path ModelsFile = Paths.get("resources/models.properties");
+    public static final Path FpsFile = Paths.get("resources/model-fps.properties");
+
+    public static final ModelDescriptor Thin = new ModelDescriptor("thin", Paths.get(PoseDetector.MODEL_FILE), "image",
+            "Openpose/concat_stage7", 8, "BGR", ModelDescriptor.DataType.Float32, 512, 288);
+    public static final ModelDescriptor ThinSmall = new ModelDescriptor("thin-small", Paths.get(PoseDetector.MODEL_FILE), "image",
+            "Openpose/concat_stage7", 8, "BGR", ModelDescriptor.DataType.Float32, 320, 176);
+    public static final ModelDescriptor ThinQuantized = new ModelDescriptor("thin-quantized", Paths.get("resources/thin_quantized.pb"),
+            "image", "Openpose/concat_stage7", 8, "BGR", ModelDescriptor.DataType.QuantizedUInt8, 512, 288);
+
+    private final Map<String, ModelDescriptor> models = new LinkedHashMap<String, ModelDescriptor>();
+    private final Properties measured = new Properties();
+    private final Path fpsFile;
+
+    // only the built-in models, measured fps are read from and written to fpsFile
+    public ModelRegistry(Path fpsFile)
+    {
+        this.fpsFile = fpsFile;
+        register(Thin);
+        register(ThinSmall);
+        register(ThinQuantized);
+        if (Files.exists(fpsFile)) {
+            read(fpsFile, measured);
+        }
+    }
+
+    // the built-in models plus the ones in ModelsFile, with FpsFile for the measurements
+    public static ModelRegistry load()
+    {
+        return load(ModelsFile, FpsFile);
+    }
+
+    public static ModelRegistry load(Path modelsFile, Path fpsFile)
+    {
+        ModelRegistry registry = new ModelRegistry(fpsFile);
+        if (Files.exists(modelsFile)) {
+            Properties properties = new Properties();
+            read(modelsFile, properties);
+            TreeSet<String> names = new TreeSet<String>();
+            for (String key : properties.stringPropertyNames()) {
+                if (key.lastIndexOf('.') > 0) {
+                    names.add(key.substring(0, key.lastIndexOf('.')));
+                }
+            }
+            for (String name : names) {
+                registry.register(parse(name, properties, registry.models.containsKey(name) ? registry.models.get(name) : Thin));
+            }
+        }
+        return registry;
+    }
+
+    // replaces a model of the same name
+    public void register(ModelDescriptor model)
+    {
+        models.put(model.getName(), model);
+    }
+
+    public ModelDescriptor get(String name)
+    {
+        ModelDescriptor model = models.get(name);
+        if (model == null) {
+            throw new IllegalArgumentException("Unknown model " + name + ", registered: " + models.keySet());
+        }
+        return model;
+    }
+
+    public Collection<ModelDescriptor> all()
+    {
+        return models.values();
+    }
+
+    // the registered models whose graph file exists
+    public List<ModelDescriptor> available()
+    {
+        List<ModelDescriptor> available = new ArrayList<ModelDescriptor>();
+        for (ModelDescriptor model : models.values()) {
+            if (Files.isRegularFile(model.getFile())) {
+                available.add(model);
+            }
+        }
+        return available;
+    }
+
+    // NaN when the model hasn't been benchmarked on this machine
+    public double getMeasuredFps(String name)
+    {
+        String fps = measured.getProperty(name + ".fps");
+        return fps == null ? Double.NaN : Double.parseDouble(fps);
+    }
+
+    // keeps the fps and a note on how they were measured (resolution, cores, date) and rewrites the fps file
+    public void recordFps(String name, double fps, String conditions) throws IOException
+    {
+        measured.setProperty(name + ".fps", String.format(Locale.ROOT, "%.2f", fps));
+        measured.setProperty(name + ".measured", conditions);
+        if (fpsFile.getParent() != null) {
+            Files.createDirectories(fpsFile.getParent());
+        }
+        try (OutputStream out = Files.newOutputStream(fpsFile)) {
+            measured.store(out, "frames per second of each model on this machine, written by tools.ModelBenchmark");
+        }
+    }
+
+    private static ModelDescriptor parse(String name, Properties properties, ModelDescriptor base)
+    {
+        try {
+            return new ModelDescriptor(name,
+                    Paths.get(properties.getProperty(name + ".file", base.getFile().toString())),
+                    properties.getProperty(name + ".input", base.getInputName()),
+                    properties.getProperty(name + ".output", base.getOutputName()),
+                    Integer.parseInt(properties.getProperty(name + ".stride", String.valueOf(base.getStride()))),
+                    properties.getProperty(name + ".channels", base.getChannelOrder()),
+                    ModelDescriptor.DataType.valueOf(properties.getProperty(name + ".dtype", base.getDataType().name())),
+                    Integer.parseInt(properties.getProperty(name + ".width", String.valueOf(base.getDefaultWidth()))),
+                    Integer.parseInt(properties.getProperty(name + ".height", String.valueOf(base.getDefaultHeight()))));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid entry for model " + name + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static void read(Path file, Properties properties)
+    {
+        try (InputStream in = Files.newInputStream(file)) {
+            properties.load(in);
+        } catch (IOException e) {
+            System.err.println("Couldn't read " + file + ": " + e);
+        }
+    }
+}
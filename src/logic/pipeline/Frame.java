@@ -0,0 +1,49 @@
+package logic.pipeline;
+
+import logic.Human;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// one slot travelling through the pipeline stages, all buffers are allocated once and reused
+public class Frame
+{
+    public long number;
+    public long capturedAt;
+    public boolean dropped;
+    // the motion gate found nothing new, the humans are the previous frame's
+    public boolean gated;
+    public final Mat mat;
+    public final FloatBuffer input;
+    public final FloatBuffer output;
+    public final List<Human> humans = new ArrayList<Human>();
+    private Human[] humanPool = new Human[0];
+
+    public Frame(int width, int height, FloatBuffer input, FloatBuffer output)
+    {
+        mat = new Mat(height, width, CvType.CV_8UC3);
+        this.input = input;
+        this.output = output;
+    }
+
+    // copies the detector results, which are overwritten by the next decode, into this frame
+    public void setHumans(List<Human> detected)
+    {
+        if (humanPool.length < detected.size()) {
+            int size = humanPool.length;
+            humanPool = Arrays.copyOf(humanPool, Math.max(detected.size(), size * 2));
+            for (int i = size; i < humanPool.length; i++) {
+                humanPool[i] = new Human();
+            }
+        }
+        humans.clear();
+        for (int i = 0; i < detected.size(); i++) {
+            humanPool[i].copyFrom(detected.get(i));
+            humans.add(humanPool[i]);
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package logic.pipeline;
+
+import logic.Camera;
+import logic.Human;
+import logic.MotionGate;
+import logic.PoseDetector;
+import logic.metrics.PoseMetrics;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+// capture -> preprocessing -> inference -> post-processing -> rendering, one thread per stage
+// the renderer may be null; it gets the frame Mat and humans and must be done with them when it returns
+public class FramePipeline
+{
+    private final int FrameCount = 6;
+    private final long IdleWaitNanos = TimeUnit.MICROSECONDS.toNanos(200);
+    private final long ReadRetryNanos = TimeUnit.MILLISECONDS.toNanos(5);
+
+    private final Camera camera;
+    private final PoseDetector detector;
+    private final Consumer<Frame> renderer;
+    private final int width;
+    private final int height;
+
+    private final SpscRing<Frame> free = new SpscRing<Frame>(FrameCount);
+    private final SpscRing<Frame> captured = new SpscRing<Frame>(FrameCount);
+    private final SpscRing<Frame> prepared = new SpscRing<Frame>(FrameCount);
+    private final SpscRing<Frame> inferred = new SpscRing<Frame>(FrameCount);
+    private final SpscRing<Frame> decoded = new SpscRing<Frame>(FrameCount);
+
+    private volatile MotionGate gate;
+    private Thread[] stages;
+    private volatile boolean running;
+
+    public FramePipeline(Camera camera, PoseDetector detector, int width, int height, Consumer<Frame> renderer)
+    {
+        this.camera = camera;
+        this.detector = detector;
+        this.renderer = renderer;
+        this.width = width;
+        this.height = height;
+
+        // the free ring is filled before any stage starts, from then on only the render stage returns frames to it
+        for (int i = 0; i < FrameCount; i++) {
+            free.offer(new Frame(width, height, detector.newInputBuffer(), detector.newOutputBuffer()));
+        }
+    }
+
+    // frames the gate holds back skip inference and post-processing and show the last decoded humans, null disables it
+    public void setMotionGate(MotionGate gate)
+    {
+        this.gate = gate;
+    }
+
+    public void start()
+    {
+        running = true;
+        stages = new Thread[]{
+                new Thread(this::capture, "pose-capture"),
+                new Thread(this::preprocess, "pose-preprocess"),
+                new Thread(this::infer, "pose-inference"),
+                new Thread(this::postProcess, "pose-postprocess"),
+                new Thread(this::render, "pose-render")};
+        for (Thread stage : stages) {
+            stage.setDaemon(true);
+            stage.start();
+        }
+    }
+
+    public void stop()
+    {
+        running = false;
+        if (stages == null) {
+            return;
+        }
+        for (Thread stage : stages) {
+            try {
+                stage.join(1000);
+            } catch (InterruptedException e) {
+                System.err.println("Interrupted while stopping the " + stage.getName() + " stage: " + e);
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void capture()
+    {
+        long number = 0;
+        Frame frame = null;
+        while (running) {
+            if (frame == null) {
+                frame = await(free);
+                continue;
+            }
+            if (!camera.read(frame.mat, width, height)) {
+                // unplugged camera or end of the stream, don't spin on it
+                LockSupport.parkNanos(ReadRetryNanos);
+                continue;
+            }
+            PoseMetrics.Global.frameCaptured();
+            frame.number = number++;
+            frame.capturedAt = System.nanoTime();
+            frame.dropped = false;
+            frame.gated = false;
+            captured.offer(frame);
+            frame = null;
+        }
+    }
+
+    private void preprocess()
+    {
+        while (running) {
+            Frame frame = await(captured);
+            if (frame == null) {
+                continue;
+            }
+            detector.prepareInput(frame.mat, frame.input);
+            prepared.offer(frame);
+        }
+    }
+
+    private void infer()
+    {
+        while (running) {
+            Frame frame = await(prepared);
+            if (frame == null) {
+                continue;
+            }
+            // latest frame wins: everything older than the newest prepared frame skips inference and is only recycled
+            Frame newer;
+            while ((newer = prepared.poll()) != null) {
+                frame.dropped = true;
+                inferred.offer(frame);
+                frame = newer;
+            }
+            // gated here rather than before preprocessing, so the gate only ever compares frames that are not dropped
+            MotionGate gate = this.gate;
+            if (gate != null && !gate.shouldInfer(frame.mat)) {
+                frame.gated = true;
+            } else {
+                detector.runInference(frame.input, frame.output);
+            }
+            inferred.offer(frame);
+        }
+    }
+
+    private void postProcess()
+    {
+        // the detector reuses its result list, so the last one stays valid until the next decode on this thread
+        List<Human> last = Collections.emptyList();
+        while (running) {
+            Frame frame = await(inferred);
+            if (frame == null) {
+                continue;
+            }
+            if (frame.gated) {
+                frame.setHumans(last);
+            } else if (!frame.dropped) {
+                last = detector.decode(frame.output);
+                frame.setHumans(last);
+                PoseMetrics.Global.markFirstPose();
+            }
+            decoded.offer(frame);
+        }
+    }
+
+    private void render()
+    {
+        while (running) {
+            Frame frame = await(decoded);
+            if (frame == null) {
+                continue;
+            }
+            if (frame.dropped) {
+                PoseMetrics.Global.frameDropped();
+            } else {
+                if (frame.gated) {
+                    PoseMetrics.Global.frameGated();
+                }
+                if (renderer != null) {
+                    long start = System.nanoTime();
+                    renderer.accept(frame);
+                    PoseMetrics.Global.record(PoseMetrics.Stage.Render, System.nanoTime() - start);
+                }
+                PoseMetrics.Global.record(PoseMetrics.Stage.FrameLatency, System.nanoTime() - frame.capturedAt);
+            }
+            free.offer(frame);
+        }
+    }
+
+    // returns null after a short park when nothing is queued, so stages notice a stop request
+    private Frame await(SpscRing<Frame> ring)
+    {
+        Frame frame = ring.poll();
+        if (frame == null) {
+            LockSupport.parkNanos(IdleWaitNanos);
+        }
+        return frame;
+    }
+}
@@ -0,0 +1,51 @@
+package logic.pipeline;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// bounded ring buffer for exactly one producer thread and one consumer thread
+public class SpscRing<T>
+{
+    private final Object[] slots;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    public SpscRing(int capacity)
+    {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        slots = new Object[size];
+        mask = size - 1;
+    }
+
+    // producer side, returns false when the ring is full
+    public boolean offer(T item)
+    {
+        long t = tail.get();
+        if (t - head.get() == slots.length) {
+            return false;
+        }
+        slots[(int) t & mask] = item;
+        tail.lazySet(t + 1);
+        return true;
+    }
+
+    // consumer side, returns null when the ring is empty
+    @SuppressWarnings("unchecked")
+    public T poll()
+    {
+        long h = head.get();
+        if (h == tail.get()) {
+            return null;
+        }
+        int index = (int) h & mask;
+        T item = (T) slots[index];
+        slots[index] = null;
+        head.lazySet(h + 1);
+        return item;
+    }
+
+    public boolean isEmpty()
+    {
+        return head.get() == tail.get();
+    }
+}
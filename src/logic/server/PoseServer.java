@@ -0,0 +1,368 @@
+package logic.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import logic.Human;
+import logic.PoseDetector;
+import logic.PoseJson;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfByte;
+import org.opencv.core.Size;
+import org.opencv.imgcodecs.Imgcodecs;
+import org.opencv.imgproc.Imgproc;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Headless pose estimation for other processes on the same host: POST /poses with a JPEG or PNG frame as the body
+// answers with one PoseJson object, coordinates in heatmap cells of the server's input size. The frames of all
+// requests that arrive within the batching window after the first one (or until the batch is full) go through the
+// detector as one batched run. Every request has a deadline, the X-Deadline-Millis header or the server default,
+// counted from its arrival and checked again right before the batch runs; a request whose deadline passed while it
+// was queued or while its batch was being collected is answered with 503 instead of being run late, as is one that
+// finds the queue full or the server stopped. A handler never waits for its result past the deadline, a batch that
+// failed is answered with 500.
+// GET /stats returns the request counters as a JSON object.
+public class PoseServer
+{
+    public static final String DeadlineHeader = "X-Deadline-Millis";
+
+    private final PoseDetector detector;
+    private final int width;
+    private final int height;
+    private final int maxBatch;
+    private final long windowNanos;
+    private final long defaultDeadlineNanos;
+    private final BlockingQueue<Request> queue;
+    private final HttpServer server;
+    private final ExecutorService handlers;
+    private final Thread batcher;
+    private volatile boolean running;
+
+    private final AtomicLong served = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong frameNumber = new AtomicLong();
+
+    // binds to the loopback address only; handlerThreads decode requests concurrently, queueCapacity bounds the
+    // requests waiting for a batch
+    public PoseServer(PoseDetector detector, int width, int height, int port, int maxBatch, long windowMillis,
+                      long defaultDeadlineMillis, int handlerThreads, int queueCapacity) throws IOException
+    {
+        if (maxBatch < 1 || windowMillis < 0 || defaultDeadlineMillis <= 0) {
+            throw new IllegalArgumentException("Invalid batching settings: batch " + maxBatch + ", window " + windowMillis
+                    + " ms, deadline " + defaultDeadlineMillis + " ms");
+        }
+        this.detector = detector;
+        this.width = width;
+        this.height = height;
+        this.maxBatch = maxBatch;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        this.defaultDeadlineNanos = TimeUnit.MILLISECONDS.toNanos(defaultDeadlineMillis);
+        queue = new ArrayBlockingQueue<Request>(queueCapacity);
+        detector.setBatchSize(maxBatch);
+
+        AtomicInteger handlerCount = new AtomicInteger();
+        handlers = Executors.newFixedThreadPool(handlerThreads, runnable -> {
+            Thread handler = new Thread(runnable, "pose-server-" + handlerCount.getAndIncrement());
+            handler.setDaemon(true);
+            return handler;
+        });
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), queueCapacity);
+        server.setExecutor(handlers);
+        server.createContext("/poses", this::handlePoses);
+        server.createContext("/stats", this::handleStats);
+        batcher = new Thread(this::batchLoop, "pose-server-batcher");
+        batcher.setDaemon(true);
+    }
+
+    public void start()
+    {
+        running = true;
+        batcher.start();
+        server.start();
+    }
+
+    public void stop()
+    {
+        running = false;
+        server.stop(0);
+        batcher.interrupt();
+        try {
+            batcher.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        handlers.shutdown();
+        Request request;
+        while ((request = queue.poll()) != null) {
+            stopped(request);
+        }
+    }
+
+    public int getPort()
+    {
+        return server.getAddress().getPort();
+    }
+
+    public long getServedRequests()
+    {
+        return served.get();
+    }
+
+    public long getExpiredRequests()
+    {
+        return expired.get();
+    }
+
+    public long getRejectedRequests()
+    {
+        return rejected.get();
+    }
+
+    public long getBatchCount()
+    {
+        return batches.get();
+    }
+
+    private void handlePoses(HttpExchange exchange) throws IOException
+    {
+        long arrival = System.nanoTime();
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                respond(exchange, 405, error("POST an encoded image"));
+                return;
+            }
+            long deadline = arrival + defaultDeadlineNanos;
+            String header = exchange.getRequestHeaders().getFirst(DeadlineHeader);
+            if (header != null) {
+                try {
+                    deadline = arrival + TimeUnit.MILLISECONDS.toNanos(Long.parseLong(header.trim()));
+                } catch (NumberFormatException e) {
+                    respond(exchange, 400, error("Invalid " + DeadlineHeader + ": " + header));
+                    return;
+                }
+            }
+
+            Mat frame = decode(readBody(exchange.getRequestBody()));
+            if (frame == null) {
+                respond(exchange, 400, error("Body is not a decodable image"));
+                return;
+            }
+
+            Request request = new Request(frame, deadline);
+            if (!running || !queue.offer(request)) {
+                rejected.incrementAndGet();
+                frame.release();
+                respond(exchange, 503, error(running ? "Queue full" : "Server stopped"));
+                return;
+            }
+            List<Human> humans;
+            try {
+                humans = request.result.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                // still queued when nobody took it, e.g. offered while stop() drained the queue; once the batcher has
+                // it, it releases the frame itself
+                if (queue.remove(request)) {
+                    expire(request);
+                }
+                respond(exchange, 503, error("Deadline passed"));
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                respond(exchange, 503, error("Interrupted"));
+                return;
+            } catch (ExecutionException e) {
+                int status = e.getCause() instanceof Rejection ? 503 : 500;
+                respond(exchange, status, error(String.valueOf(e.getCause().getMessage())));
+                return;
+            }
+            StringBuilder json = new StringBuilder();
+            PoseJson.append(json, frameNumber.getAndIncrement(), humans);
+            respond(exchange, 200, json.toString());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleStats(HttpExchange exchange) throws IOException
+    {
+        try {
+            respond(exchange, 200, "{\"served\":" + served.get() + ",\"expired\":" + expired.get() + ",\"rejected\":"
+                    + rejected.get() + ",\"batches\":" + batches.get() + ",\"queued\":" + queue.size() + "}");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    // collects one batch per iteration: blocks for the first request, then takes whatever arrives within the window
+    private void batchLoop()
+    {
+        List<Request> batch = new ArrayList<Request>(maxBatch);
+        List<Mat> frames = new ArrayList<Mat>(maxBatch);
+        while (running) {
+            batch.clear();
+            frames.clear();
+            try {
+                Request first = queue.take();
+                long windowEnd = System.nanoTime() + windowNanos;
+                admit(first, batch);
+                while (batch.size() < maxBatch) {
+                    long remaining = windowEnd - System.nanoTime();
+                    Request next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    admit(next, batch);
+                }
+            } catch (InterruptedException e) {
+                for (Request request : batch) {
+                    stopped(request);
+                }
+                return;
+            }
+
+            // the window may have outlasted the deadline of requests admitted early in it
+            long now = System.nanoTime();
+            int kept = 0;
+            for (Request request : batch) {
+                if (now > request.deadline) {
+                    expire(request);
+                } else {
+                    batch.set(kept++, request);
+                    frames.add(request.frame);
+                }
+            }
+            batch.subList(kept, batch.size()).clear();
+            if (batch.isEmpty()) {
+                continue;
+            }
+
+            try {
+                List<List<Human>> results = detector.recognizePoses(frames);
+                batches.incrementAndGet();
+                for (int i = 0; i < batch.size(); i++) {
+                    served.incrementAndGet();
+                    batch.get(i).result.complete(results.get(i));
+                }
+            } catch (RuntimeException e) {
+                System.err.println("Batch of " + batch.size() + " failed: " + e);
+                for (Request request : batch) {
+                    request.result.completeExceptionally(e);
+                }
+            }
+            for (Mat frame : frames) {
+                frame.release();
+            }
+        }
+    }
+
+    // late requests are answered right away instead of taking a slot in the batch
+    private void admit(Request request, List<Request> batch)
+    {
+        if (System.nanoTime() > request.deadline) {
+            expire(request);
+        } else {
+            batch.add(request);
+        }
+    }
+
+    private void expire(Request request)
+    {
+        expired.incrementAndGet();
+        request.frame.release();
+        request.result.completeExceptionally(new Rejection("Deadline passed before the batch ran"));
+    }
+
+    private static void stopped(Request request)
+    {
+        request.frame.release();
+        request.result.completeExceptionally(new Rejection("Server stopped"));
+    }
+
+    // decodes to BGR and resizes to the detector's input size, null when the bytes are not an image
+    private Mat decode(byte[] body)
+    {
+        if (body.length == 0) {
+            return null;
+        }
+        MatOfByte encoded = new MatOfByte(body);
+        Mat decoded = Imgcodecs.imdecode(encoded, Imgcodecs.IMREAD_COLOR);
+        encoded.release();
+        if (decoded == null || decoded.empty()) {
+            return null;
+        }
+        if (decoded.width() != width || decoded.height() != height) {
+            Imgproc.resize(decoded, decoded, new Size(width, height));
+        }
+        return decoded;
+    }
+
+    private static byte[] readBody(InputStream body) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] chunk = new byte[16384];
+        int read;
+        while ((read = body.read(chunk)) > 0) {
+            bytes.write(chunk, 0, read);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static String error(String message)
+    {
+        return "{\"error\":\"" + message.replace("\\", "\\\\").replace("\"", "\\\"") + "\"}";
+    }
+
+    private static void respond(HttpExchange exchange, int status, String json) throws IOException
+    {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    // a request the server turned down instead of running, as opposed to a batch that failed
+    private static class Rejection extends RuntimeException
+    {
+        private static final long serialVersionUID = 1L;
+
+        Rejection(String message)
+        {
+            super(message);
+        }
+    }
+
+    private static class Request
+    {
+        final Mat frame;
+        final long deadline;
+        final CompletableFuture<List<Human>> result = new CompletableFuture<List<Human>>();
+
+        Request(Mat frame, long deadline)
+        {
+            this.frame = frame;
+            this.deadline = deadline;
+        }
+    }
+}
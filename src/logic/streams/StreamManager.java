@@ -0,0 +1,291 @@
+package logic.streams;
+
+import logic.Camera;
+import logic.Human;
+import logic.PoseDetector;
+import logic.PoseDetectorPool;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+// Serves many cameras with the fixed set of detectors of a PoseDetectorPool. Every stream has its own capture thread
+// and a single latest-frame slot: a new frame replaces one that was not picked up yet, which counts as a drop of
+// that stream only. One worker per detector walks the streams round-robin from where the last pick left off and
+// takes the first one with a waiting frame that isn't already being processed, so every stream gets its turn and a
+// stalled one is simply skipped. Results of one stream are delivered in capture order.
+// Video files stand in for cameras at their own frame rate (see Camera), a file that reaches its end either ends its
+// stream or starts over, see setLoopFiles.
+public class StreamManager
+{
+    public interface Listener
+    {
+        // called on a worker thread, the humans are only valid during the call
+        void onPoses(int stream, long frameNumber, List<Human> humans);
+    }
+
+    private final long IdleWaitNanos = TimeUnit.MICROSECONDS.toNanos(500);
+
+    private final Stream[] streams;
+    private final PoseDetectorPool pool;
+    private final int width;
+    private final int height;
+    private final Listener listener;
+    private final AtomicInteger cursor = new AtomicInteger();
+    private Thread[] threads;
+    private volatile boolean loopFiles;
+    private volatile boolean running;
+    private long reportStart;
+
+    // frames are resized to the pool's detector size, the listener may be null
+    public StreamManager(List<Camera> cameras, PoseDetectorPool pool, int width, int height, Listener listener)
+    {
+        this.pool = pool;
+        this.width = width;
+        this.height = height;
+        this.listener = listener;
+        streams = new Stream[cameras.size()];
+        for (int i = 0; i < streams.length; i++) {
+            streams[i] = new Stream(i, cameras.get(i));
+        }
+    }
+
+    public int size()
+    {
+        return streams.length;
+    }
+
+    // whether a file stream starts over at its end instead of ending, set before start()
+    public void setLoopFiles(boolean loopFiles)
+    {
+        this.loopFiles = loopFiles;
+    }
+
+    public void start()
+    {
+        running = true;
+        reportStart = System.nanoTime();
+        threads = new Thread[streams.length + pool.size()];
+        for (int i = 0; i < streams.length; i++) {
+            Stream stream = streams[i];
+            threads[i] = new Thread(() -> capture(stream), "stream-capture-" + i);
+        }
+        for (int i = 0; i < pool.size(); i++) {
+            threads[streams.length + i] = new Thread(this::work, "stream-worker-" + i);
+        }
+        for (Thread thread : threads) {
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    public void stop()
+    {
+        running = false;
+        if (threads == null) {
+            return;
+        }
+        for (Thread thread : threads) {
+            try {
+                thread.join(1000);
+            } catch (InterruptedException e) {
+                System.err.println("Interrupted while stopping " + thread.getName() + ": " + e);
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    public long getCapturedFrames(int stream)
+    {
+        return streams[stream].captured;
+    }
+
+    public long getProcessedFrames(int stream)
+    {
+        return streams[stream].processed;
+    }
+
+    public long getDroppedFrames(int stream)
+    {
+        return streams[stream].dropped;
+    }
+
+    // true once the file of the stream has been read to its end, always false with setLoopFiles(true)
+    public boolean isEnded(int stream)
+    {
+        return streams[stream].ended;
+    }
+
+    public boolean allEnded()
+    {
+        for (Stream stream : streams) {
+            if (!stream.ended) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // one line per stream with the processed fps and drops since the previous report
+    public String report()
+    {
+        long now = System.nanoTime();
+        double seconds = (now - reportStart) / 1e9;
+        reportStart = now;
+        StringBuilder report = new StringBuilder();
+        for (Stream stream : streams) {
+            long processed = stream.processed;
+            long dropped = stream.dropped;
+            report.append(String.format("stream %2d: %6.2f fps, %d dropped (%d processed, %d dropped in total)%s%n",
+                    stream.index, (processed - stream.reportedProcessed) / seconds, dropped - stream.reportedDropped,
+                    processed, dropped, stream.ended ? ", ended" : ""));
+            stream.reportedProcessed = processed;
+            stream.reportedDropped = dropped;
+        }
+        return report.toString();
+    }
+
+    private void capture(Stream stream)
+    {
+        Mat writing = stream.free.poll();
+        while (running) {
+            if (!stream.camera.read(writing, width, height)) {
+                if (stream.camera.isEnded() && !(loopFiles && stream.camera.rewind())) {
+                    stream.free.offer(writing);
+                    stream.ended = true;
+                    return;
+                }
+                LockSupport.parkNanos(IdleWaitNanos);
+                continue;
+            }
+            stream.frameNumbers.put(writing, stream.captured);
+            stream.captured++;
+            Mat replaced = stream.latest.getAndSet(writing);
+            if (replaced != null) {
+                stream.dropped++;
+                writing = replaced;
+            } else {
+                // three frames per stream: this one is now in the slot, at most one is with a worker
+                writing = stream.free.poll();
+            }
+        }
+    }
+
+    private void work()
+    {
+        while (running) {
+            Stream stream = next();
+            if (stream == null) {
+                LockSupport.parkNanos(IdleWaitNanos);
+                continue;
+            }
+            Mat frame = stream.latest.getAndSet(null);
+            if (frame == null) {
+                stream.inFlight.set(false);
+                continue;
+            }
+            PoseDetector detector;
+            try {
+                detector = pool.checkout();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            try {
+                detector.setImage(frame);
+                List<Human> humans = detector.recognizePoses();
+                if (listener != null) {
+                    listener.onPoses(stream.index, stream.frameNumbers.get(frame), humans);
+                }
+            } finally {
+                pool.release(detector);
+                stream.processed++;
+                stream.free.offer(frame);
+                stream.inFlight.set(false);
+            }
+        }
+    }
+
+    // claims the next stream after the cursor that has a frame waiting and no worker on it
+    private Stream next()
+    {
+        int start = cursor.get();
+        for (int i = 0; i < streams.length; i++) {
+            int index = (start + i) % streams.length;
+            Stream stream = streams[index];
+            if (stream.latest.get() != null && stream.inFlight.compareAndSet(false, true)) {
+                cursor.set(index + 1);
+                return stream;
+            }
+        }
+        return null;
+    }
+
+    private class Stream
+    {
+        final int index;
+        final Camera camera;
+        final AtomicReference<Mat> latest = new AtomicReference<Mat>();
+        final ArrayBlockingQueue<Mat> free = new ArrayBlockingQueue<Mat>(3);
+        final AtomicBoolean inFlight = new AtomicBoolean();
+        final FrameNumbers frameNumbers = new FrameNumbers();
+        // written by one thread each (captured, dropped by the capture thread, processed under inFlight)
+        volatile long captured;
+        volatile long dropped;
+        volatile long processed;
+        volatile boolean ended;
+        long reportedProcessed;
+        long reportedDropped;
+
+        Stream(int index, Camera camera)
+        {
+            this.index = index;
+            this.camera = camera;
+            for (int i = 0; i < 3; i++) {
+                Mat frame = new Mat(height, width, CvType.CV_8UC3);
+                free.add(frame);
+                frameNumbers.add(frame);
+            }
+        }
+    }
+
+    // the capture number of each of the three frames of a stream, without boxing
+    private static class FrameNumbers
+    {
+        private final Mat[] frames = new Mat[3];
+        private final long[] numbers = new long[3];
+        private int count;
+
+        void add(Mat frame)
+        {
+            frames[count++] = frame;
+        }
+
+        void put(Mat frame, long number)
+        {
+            numbers[indexOf(frame)] = number;
+        }
+
+        long get(Mat frame)
+        {
+            return numbers[indexOf(frame)];
+        }
+
+        private int indexOf(Mat frame)
+        {
+            for (int i = 0; i < count; i++) {
+                if (frames[i] == frame) {
+                    return i;
+                }
+            }
+            throw new IllegalArgumentException("Not a frame of this stream");
+        }
+    }
+}
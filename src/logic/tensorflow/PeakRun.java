@@ -0,0 +1,86 @@
+package logic.tensorflow;
+
+import logic.metrics.PoseMetrics;
+import org.tensorflow.Output;
+import org.tensorflow.Session;
+import org.tensorflow.Tensor;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.LongBuffer;
+import java.util.List;
+
+// The counterpart of PreparedRun for a graph augmented by TensorFlowInferenceInterface.appendPeakExtraction: one
+// frame in, the peak list and the PAF channels out, both fetched into direct buffers sized for the worst case once.
+public class PeakRun
+{
+    private final Session sess;
+    private final Output<?> input;
+    private final Output<?> peaks;
+    private final Output<?> pafs;
+    private final long[] inputShape;
+    private final LongBuffer peakBuffer;
+    private final FloatBuffer pafBuffer;
+    private int peakCount;
+
+    PeakRun(Session sess, Output<?> input, long[] inputShape, Output<?> peaks, int maxPeaks, Output<?> pafs, int pafSize)
+    {
+        this.sess = sess;
+        this.input = input;
+        this.inputShape = inputShape.clone();
+        this.peaks = peaks;
+        this.pafs = pafs;
+        this.peakBuffer = ByteBuffer.allocateDirect(maxPeaks * 4 * 8).order(ByteOrder.nativeOrder()).asLongBuffer();
+        this.pafBuffer = PreparedRun.allocate(pafSize);
+    }
+
+    // (batch, row, column, channel) quadruples of the last run, peakCount() of them
+    public LongBuffer peaks()
+    {
+        return peakBuffer;
+    }
+
+    public int peakCount()
+    {
+        return peakCount;
+    }
+
+    public FloatBuffer pafs()
+    {
+        return pafBuffer;
+    }
+
+    // data is a full input frame, e.g. PreparedRun.input() after the image was set
+    public void run(FloatBuffer data)
+    {
+        long start = System.nanoTime();
+        data.clear();
+        Tensor<Float> tensor = Tensor.create(inputShape, data);
+        try {
+            List<Tensor<?>> results = sess.runner().feed(input, tensor).fetch(peaks).fetch(pafs).run();
+            long fetchStart = System.nanoTime();
+            PoseMetrics.Global.record(PoseMetrics.Stage.Inference, fetchStart - start);
+            Tensor<?> peakTensor = results.get(0);
+            Tensor<?> pafTensor = results.get(1);
+            try {
+                peakCount = (int) peakTensor.shape()[0];
+                peakBuffer.clear();
+                peakTensor.writeTo(peakBuffer);
+                pafBuffer.clear();
+                pafTensor.writeTo(pafBuffer);
+            } finally {
+                peakTensor.close();
+                pafTensor.close();
+            }
+            PoseMetrics.Global.record(PoseMetrics.Stage.Fetch, System.nanoTime() - fetchStart);
+        } catch (RuntimeException e) {
+            System.out.println("Failed to run TensorFlow inference with input:[" + input.op().name()
+                    + "], outputs:[" + peaks.op().name() + ", " + pafs.op().name() + "]");
+            throw e;
+        } finally {
+            tensor.close();
+            data.clear();
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package logic.tensorflow;
+
+import logic.metrics.PoseMetrics;
+import org.tensorflow.Output;
+import org.tensorflow.Session;
+import org.tensorflow.Tensor;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.List;
+
+// A single float input -> single float output run whose operations are resolved once and whose input and output
+// live in direct, native-order buffers that are reused for every run. TensorFlow 1.x still needs a fresh input and
+// output Tensor per run, these are the only native allocations left and both are closed before run() returns.
+// The first input dimension is the batch size, runs may use any batch up to the prepared one.
+public class PreparedRun
+{
+    private final Session sess;
+    private final Output<?> input;
+    private final Output<?> output;
+    private final long[] inputShape;
+    private final int batchSize;
+    private final int inputFrameSize;
+    private final int outputFrameSize;
+    private final FloatBuffer inputBuffer;
+    private final FloatBuffer outputBuffer;
+    private final FloatBuffer outputView;
+
+    PreparedRun(Session sess, Output<?> input, long[] inputShape, Output<?> output, int outputSize)
+    {
+        this.sess = sess;
+        this.input = input;
+        this.output = output;
+        this.inputShape = inputShape.clone();
+
+        int inputSize = 1;
+        for (long dimension : inputShape) {
+            inputSize *= (int) dimension;
+        }
+        this.batchSize = (int) inputShape[0];
+        this.inputFrameSize = inputSize / batchSize;
+        this.outputFrameSize = outputSize / batchSize;
+        this.inputBuffer = allocate(inputSize);
+        this.outputBuffer = allocate(outputSize);
+        this.outputView = outputBuffer.asReadOnlyBuffer();
+    }
+
+    static FloatBuffer allocate(int size)
+    {
+        return ByteBuffer.allocateDirect(size * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+    }
+
+    // written with absolute puts by the caller before run()
+    public FloatBuffer input()
+    {
+        return inputBuffer;
+    }
+
+    // read-only view on the last fetched output, use absolute gets
+    public FloatBuffer output()
+    {
+        return outputView;
+    }
+
+    public int batchSize()
+    {
+        return batchSize;
+    }
+
+    public int inputFrameSize()
+    {
+        return inputFrameSize;
+    }
+
+    public int outputFrameSize()
+    {
+        return outputFrameSize;
+    }
+
+    public void run()
+    {
+        run(inputBuffer, batchSize);
+    }
+
+    // runs only the first frames of input() as a smaller batch
+    public void run(int frames)
+    {
+        run(inputBuffer, frames);
+    }
+
+    // feeds a caller owned buffer of the prepared input shape instead of input()
+    public void run(FloatBuffer data)
+    {
+        run(data, batchSize);
+    }
+
+    public void run(FloatBuffer data, int frames)
+    {
+        if (frames < 1 || frames > batchSize) {
+            throw new IllegalArgumentException("Batch of " + frames + " frames doesn't fit the prepared batch size " + batchSize);
+        }
+        inputShape[0] = frames;
+        data.position(0);
+        data.limit(frames * inputFrameSize);
+        long start = System.nanoTime();
+        Tensor<Float> tensor = Tensor.create(inputShape, data);
+        try {
+            List<Tensor<?>> results = sess.runner().feed(input, tensor).fetch(output).run();
+            long fetchStart = System.nanoTime();
+            PoseMetrics.Global.record(PoseMetrics.Stage.Inference, fetchStart - start);
+            Tensor<?> result = results.get(0);
+            try {
+                outputBuffer.clear();
+                result.writeTo(outputBuffer);
+            } finally {
+                result.close();
+            }
+            PoseMetrics.Global.record(PoseMetrics.Stage.Fetch, System.nanoTime() - fetchStart);
+        } catch (RuntimeException e) {
+            System.out.println("Failed to run TensorFlow inference with input:[" + input.op().name()
+                    + "], output:[" + output.op().name() + "]");
+            throw e;
+        } finally {
+            tensor.close();
+            data.clear();
+        }
+    }
+}
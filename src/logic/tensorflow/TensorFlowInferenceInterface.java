@@ -17,10 +17,12 @@ package logic.tensorflow;
 import org.tensorflow.*;
 import org.tensorflow.types.UInt8;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.*;
-import java.nio.file.Files;
+import java.nio.channels.FileChannel;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
@@ -29,6 +31,7 @@ public class TensorFlowInferenceInterface
 {
     private final Graph g;
     private final Session sess;
+    private final boolean ownsGraph;
     private Session.Runner runner;
     private List<String> feedNames = new ArrayList();
     private List<Tensor<?>> feedTensors = new ArrayList();
@@ -41,18 +44,68 @@ public class TensorFlowInferenceInterface
         this.g = new Graph();
         this.sess = new Session(this.g);
         this.runner = this.sess.runner();
+        this.ownsGraph = true;
 
         try {
-            this.loadGraph(readAllBytesOrExit(path), this.g);
+            loadGraph(readAllBytesOrExit(path), this.g);
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
-    private static byte[] readAllBytesOrExit(Path path)
+    // a session of its own on a graph that is already loaded and shared with other interfaces, close() leaves the
+    // graph open; config is a serialized ConfigProto, see sessionConfig
+    public TensorFlowInferenceInterface(Graph graph, byte[] config)
     {
+        this.prepareNativeRuntime();
+        this.g = graph;
+        this.sess = config == null ? new Session(this.g) : new Session(this.g, config);
+        this.runner = this.sess.runner();
+        this.ownsGraph = false;
+    }
+
+    public static Graph importGraph(Path path)
+    {
+        Graph var1 = new Graph();
         try {
-            return Files.readAllBytes(path);
+            loadGraph(readAllBytesOrExit(path), var1);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return var1;
+    }
+
+    // hand-encoded ConfigProto with intra_op_parallelism_threads (field 2) and inter_op_parallelism_threads (field 5),
+    // 0 leaves the choice to TensorFlow
+    public static byte[] sessionConfig(int intraOpThreads, int interOpThreads)
+    {
+        ByteArrayOutputStream var3 = new ByteArrayOutputStream();
+        writeVarintField(var3, 2, intraOpThreads);
+        writeVarintField(var3, 5, interOpThreads);
+        return var3.toByteArray();
+    }
+
+    private static void writeVarintField(ByteArrayOutputStream var0, int var1, int var2)
+    {
+        if (var2 <= 0) {
+            return;
+        }
+        var0.write(var1 << 3);
+        while ((var2 & ~0x7F) != 0) {
+            var0.write((var2 & 0x7F) | 0x80);
+            var2 >>>= 7;
+        }
+        var0.write(var2);
+    }
+
+    // the model is mapped and copied out of the page cache in one bulk get, importGraphDef in TF 1.x only takes a byte[]
+    private static byte[] readAllBytesOrExit(Path path)
+    {
+        try (FileChannel var1 = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer var2 = var1.map(FileChannel.MapMode.READ_ONLY, 0, var1.size());
+            byte[] var3 = new byte[var2.remaining()];
+            var2.get(var3);
+            return var3;
         } catch (IOException e) {
             System.err.println("Failed to read [" + path + "]: " + e.getMessage());
             System.exit(1);
@@ -97,6 +150,76 @@ public class TensorFlowInferenceInterface
 
     }
 
+    // resolves both operations once, the returned run owns direct input and output buffers and can be reused for every frame
+    public PreparedRun prepare(String inputName, long[] inputShape, String outputName, int outputSize)
+    {
+        TensorFlowInferenceInterface.TensorId var5 = TensorFlowInferenceInterface.TensorId.parse(inputName);
+        TensorFlowInferenceInterface.TensorId var6 = TensorFlowInferenceInterface.TensorId.parse(outputName);
+        Output<?> var7 = this.graphOperation(var5.name).output(var5.outputIndex);
+        Output<?> var8 = this.graphOperation(var6.name).output(var6.outputIndex);
+        return new PreparedRun(this.sess, var7, inputShape, var8, outputSize);
+    }
+
+    // Appends max-pool NMS on the first heatmapCount channels of the output and a slice of its PAF channels, so a run
+    // can fetch peak coordinates instead of the whole tensor. Returns the names of the two new outputs:
+    //   peaks   int64 [n, 4] (batch, row, column, channel) of every cell above the threshold that equals the maximum of
+    //           its filterSize x filterSize window, in row-major order
+    //   pafs    float [batch, height, width, pafCount]
+    // The ops are added once per graph, interfaces sharing the graph get the same ones.
+    public String[] appendPeakExtraction(String outputName, int heatmapCount, int pafOffset, int pafCount,
+                                         int filterSize, float threshold)
+    {
+        String var7 = "PeakExtraction/peaks";
+        String var8 = "PeakExtraction/pafs";
+        synchronized (this.g) {
+            if (this.g.operation(var7) == null) {
+                TensorFlowInferenceInterface.TensorId var9 = TensorFlowInferenceInterface.TensorId.parse(outputName);
+                Output<?> var10 = this.graphOperation(var9.name).output(var9.outputIndex);
+
+                Output<?> var11 = this.g.opBuilder("Slice", "PeakExtraction/heatmaps").addInput(var10)
+                        .addInput(this.constant("PeakExtraction/heatmaps_begin", new int[]{0, 0, 0, 0}))
+                        .addInput(this.constant("PeakExtraction/heatmaps_size", new int[]{-1, -1, -1, heatmapCount}))
+                        .build().output(0);
+                Output<?> var12 = this.g.opBuilder("MaxPool", "PeakExtraction/window_max").addInput(var11)
+                        .setAttr("ksize", new long[]{1, filterSize, filterSize, 1})
+                        .setAttr("strides", new long[]{1, 1, 1, 1})
+                        .setAttr("padding", "SAME")
+                        .build().output(0);
+                Output<?> var13 = this.g.opBuilder("Equal", "PeakExtraction/is_max").addInput(var11).addInput(var12)
+                        .build().output(0);
+                Output<?> var14 = this.g.opBuilder("Greater", "PeakExtraction/above_threshold").addInput(var11)
+                        .addInput(this.constant("PeakExtraction/threshold", threshold))
+                        .build().output(0);
+                Output<?> var15 = this.g.opBuilder("LogicalAnd", "PeakExtraction/is_peak").addInput(var13).addInput(var14)
+                        .build().output(0);
+                this.g.opBuilder("Where", var7).addInput(var15).build();
+
+                this.g.opBuilder("Slice", var8).addInput(var10)
+                        .addInput(this.constant("PeakExtraction/pafs_begin", new int[]{0, 0, 0, pafOffset}))
+                        .addInput(this.constant("PeakExtraction/pafs_size", new int[]{-1, -1, -1, pafCount}))
+                        .build();
+            }
+        }
+        return new String[]{var7, var8};
+    }
+
+    // like prepare, for the outputs added by appendPeakExtraction
+    public PeakRun preparePeaks(String inputName, long[] inputShape, String peaksName, int maxPeaks, String pafName, int pafSize)
+    {
+        TensorFlowInferenceInterface.TensorId var7 = TensorFlowInferenceInterface.TensorId.parse(inputName);
+        Output<?> var8 = this.graphOperation(var7.name).output(var7.outputIndex);
+        Output<?> var9 = this.graphOperation(peaksName).output(0);
+        Output<?> var10 = this.graphOperation(pafName).output(0);
+        return new PeakRun(this.sess, var8, inputShape, var9, maxPeaks, var10, pafSize);
+    }
+
+    private Output<?> constant(String var1, Object var2)
+    {
+        try (Tensor<?> var3 = Tensor.create(var2)) {
+            return this.g.opBuilder("Const", var1).setAttr("dtype", var3.dataType()).setAttr("value", var3).build().output(0);
+        }
+    }
+
     public Graph graph()
     {
         return this.g;
@@ -117,7 +240,9 @@ public class TensorFlowInferenceInterface
         this.closeFeeds();
         this.closeFetches();
         this.sess.close();
-        this.g.close();
+        if (this.ownsGraph) {
+            this.g.close();
+        }
     }
 
     protected void finalize() throws Throwable
@@ -252,7 +377,7 @@ public class TensorFlowInferenceInterface
 
     }
 
-    private void loadGraph(byte[] var1, Graph var2) throws IOException
+    private static void loadGraph(byte[] var1, Graph var2) throws IOException
     {
         long var3 = System.currentTimeMillis();
         try {
@@ -0,0 +1,322 @@
+package logic.tracking;
+
+import logic.Human;
+import logic.PoseDetector;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfByte;
+import org.opencv.core.MatOfFloat;
+import org.opencv.core.MatOfPoint2f;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+import org.opencv.video.Video;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Runs the network only on keyframes and moves the keypoints of the last keyframe along with the image in between,
+// using pyramidal Lucas-Kanade optical flow on the grayscale frames. Every tracked human keeps its id until it is
+// no longer found on a keyframe.
+//   Interval     a keyframe every interval frames
+//   Confidence   like Interval, plus a keyframe as soon as less than minConfidence of the keypoints could be tracked
+public class PoseTracker
+{
+    public enum Policy
+    {
+        Interval, Confidence
+    }
+
+    private final int PartCount = 18;
+    private final Size FlowWindow = new Size(21, 21);
+    private final int FlowLevels = 3;
+
+    private final PoseDetector detector;
+    private final int stride;
+    private final int mapWidth;
+    private final int mapHeight;
+    private Policy policy = Policy.Confidence;
+    private int interval = 5;
+    private float minConfidence = 0.7f;
+    private float maxMatchDistance = 4.0f;
+
+    private Mat gray = new Mat();
+    private Mat previousGray = new Mat();
+    private final MatOfPoint2f previousPoints = new MatOfPoint2f();
+    private final MatOfPoint2f nextPoints = new MatOfPoint2f();
+    private final MatOfByte status = new MatOfByte();
+    private final MatOfFloat error = new MatOfFloat();
+    private float[] flowPoints = new float[0];
+    private byte[] flowStatus = new byte[0];
+
+    private Track[] tracks = new Track[0];
+    private int trackCount;
+    private int[] ids = new int[0];
+    private float[] distances = new float[0];
+    private boolean[] matched = new boolean[0];
+    private final ArrayList<Human> humans = new ArrayList<Human>();
+    private int nextId;
+
+    private int sinceKeyframe;
+    private float confidence = 1.0f;
+    private long frames;
+    private long inferredFrames;
+
+    // frames passed to process() must have the detector's input size
+    public PoseTracker(PoseDetector detector)
+    {
+        this.detector = detector;
+        this.stride = detector.getModel().getStride();
+        this.mapWidth = detector.getMapWidth();
+        this.mapHeight = detector.getMapHeight();
+    }
+
+    public void setPolicy(Policy policy)
+    {
+        this.policy = policy;
+    }
+
+    // the maximum number of frames between two keyframes, 1 runs the network on every frame
+    public void setInterval(int interval)
+    {
+        if (interval < 1) {
+            throw new IllegalArgumentException("Keyframe interval must be at least 1, got " + interval);
+        }
+        this.interval = interval;
+    }
+
+    // fraction of the keypoints that must survive optical flow, only used by Policy.Confidence
+    public void setMinConfidence(float minConfidence)
+    {
+        this.minConfidence = minConfidence;
+    }
+
+    // in heatmap cells, a detection further away from every track than this starts a new id
+    public void setMaxMatchDistance(float maxMatchDistance)
+    {
+        this.maxMatchDistance = maxMatchDistance;
+    }
+
+    // the returned list and the humans in it are reused, they stay valid only until the next call
+    public List<Human> process(Mat bgrFrame)
+    {
+        Imgproc.cvtColor(bgrFrame, gray, Imgproc.COLOR_BGR2GRAY);
+        frames++;
+
+        boolean keyframe = previousGray.empty() || sinceKeyframe + 1 >= interval;
+        if (!keyframe) {
+            track();
+            keyframe = policy == Policy.Confidence && confidence < minConfidence;
+        }
+        if (keyframe) {
+            detector.setImage(bgrFrame);
+            match(detector.recognizePoses());
+            inferredFrames++;
+            sinceKeyframe = 0;
+            confidence = 1.0f;
+        } else {
+            sinceKeyframe++;
+        }
+
+        Mat swap = previousGray;
+        previousGray = gray;
+        gray = swap;
+
+        humans.clear();
+        for (int i = 0; i < trackCount; i++) {
+            humans.add(tracks[i].human);
+        }
+        return humans;
+    }
+
+    // fraction of the keypoints the last propagated frame kept
+    public float getConfidence()
+    {
+        return confidence;
+    }
+
+    public long getFrameCount()
+    {
+        return frames;
+    }
+
+    public long getInferredFrameCount()
+    {
+        return inferredFrames;
+    }
+
+    public double getSkippedFraction()
+    {
+        return frames == 0 ? 0.0 : (double) (frames - inferredFrames) / frames;
+    }
+
+    public void resetStatistics()
+    {
+        frames = 0;
+        inferredFrames = 0;
+    }
+
+    // moves every assigned keypoint by the optical flow between the previous and the current frame, keypoints the
+    // flow loses are unassigned and tracks without any keypoint left are dropped
+    private void track()
+    {
+        int points = 0;
+        for (int i = 0; i < trackCount; i++) {
+            points += tracks[i].assignedCount();
+        }
+        if (points == 0) {
+            confidence = 1.0f;
+            return;
+        }
+        if (flowPoints.length < points * 2) {
+            flowPoints = new float[points * 4];
+            flowStatus = new byte[points * 2];
+        }
+
+        int n = 0;
+        for (int i = 0; i < trackCount; i++) {
+            Track track = tracks[i];
+            for (int part = 0; part < PartCount; part++) {
+                if (track.human.coords_index_assigned[part]) {
+                    flowPoints[n * 2] = track.x[part];
+                    flowPoints[n * 2 + 1] = track.y[part];
+                    n++;
+                }
+            }
+        }
+        // put and get stop at the end of the Mat, the arrays may be larger
+        previousPoints.alloc(points);
+        previousPoints.put(0, 0, flowPoints);
+        Video.calcOpticalFlowPyrLK(previousGray, gray, previousPoints, nextPoints, status, error, FlowWindow, FlowLevels);
+        nextPoints.get(0, 0, flowPoints);
+        status.get(0, 0, flowStatus);
+
+        int tracked = 0;
+        int kept = 0;
+        n = 0;
+        for (int i = 0; i < trackCount; i++) {
+            Track track = tracks[i];
+            for (int part = 0; part < PartCount; part++) {
+                if (!track.human.coords_index_assigned[part]) {
+                    continue;
+                }
+                float x = flowPoints[n * 2];
+                float y = flowPoints[n * 2 + 1];
+                if (flowStatus[n] == 1 && x >= 0 && y >= 0 && x < gray.cols() && y < gray.rows()) {
+                    track.moveTo(part, x, y, mapWidth, mapHeight);
+                    tracked++;
+                } else {
+                    track.human.coords_index_assigned[part] = false;
+                }
+                n++;
+            }
+            if (track.assignedCount() > 0) {
+                tracks[i] = tracks[kept];
+                tracks[kept++] = track;
+            }
+        }
+        trackCount = kept;
+        confidence = (float) tracked / points;
+    }
+
+    // greedy nearest match of the detections against the propagated tracks, smallest mean keypoint distance first
+    private void match(List<Human> detections)
+    {
+        int count = detections.size();
+        if (distances.length < count * trackCount) {
+            distances = new float[count * trackCount * 2];
+        }
+        if (matched.length < Math.max(count, trackCount) * 2) {
+            matched = new boolean[Math.max(count, trackCount) * 2];
+        }
+        for (int d = 0; d < count; d++) {
+            for (int t = 0; t < trackCount; t++) {
+                distances[d * trackCount + t] = distance(detections.get(d), tracks[t].human);
+            }
+        }
+
+        if (ids.length < count) {
+            ids = new int[count * 2];
+        }
+        Arrays.fill(ids, -1);
+        Arrays.fill(matched, false);
+        while (true) {
+            int best = -1;
+            for (int i = 0; i < count * trackCount; i++) {
+                if (ids[i / trackCount] == -1 && !matched[i % trackCount] && distances[i] <= maxMatchDistance
+                        && (best == -1 || distances[i] < distances[best])) {
+                    best = i;
+                }
+            }
+            if (best == -1) {
+                break;
+            }
+            ids[best / trackCount] = tracks[best % trackCount].human.id;
+            matched[best % trackCount] = true;
+        }
+
+        // the ids are settled, so the track objects can be overwritten in place, surplus ones are kept for later
+        if (tracks.length < count) {
+            tracks = Arrays.copyOf(tracks, count * 2);
+        }
+        for (int d = 0; d < count; d++) {
+            if (tracks[d] == null) {
+                tracks[d] = new Track();
+            }
+            tracks[d].set(detections.get(d), ids[d] != -1 ? ids[d] : nextId++);
+        }
+        trackCount = count;
+    }
+
+    private float distance(Human detection, Human tracked)
+    {
+        float sum = 0.0f;
+        int common = 0;
+        for (int part = 0; part < PartCount; part++) {
+            if (detection.coords_index_assigned[part] && tracked.coords_index_assigned[part]) {
+                float dr = detection.parts_coords[part][0] - tracked.parts_coords[part][0];
+                float dc = detection.parts_coords[part][1] - tracked.parts_coords[part][1];
+                sum += (float) Math.sqrt(dr * dr + dc * dc);
+                common++;
+            }
+        }
+        return common == 0 ? Float.MAX_VALUE : sum / common;
+    }
+
+    // a human plus the sub-pixel image position of its keypoints, the human only holds rounded heatmap cells
+    private class Track
+    {
+        final Human human = new Human();
+        final float[] x = new float[PartCount];
+        final float[] y = new float[PartCount];
+
+        void set(Human detection, int id)
+        {
+            human.copyFrom(detection);
+            human.id = id;
+            for (int part = 0; part < PartCount; part++) {
+                x[part] = detection.parts_coords[part][1] * stride;
+                y[part] = detection.parts_coords[part][0] * stride;
+            }
+        }
+
+        void moveTo(int part, float x, float y, int mapWidth, int mapHeight)
+        {
+            this.x[part] = x;
+            this.y[part] = y;
+            // the flow can carry a keypoint off the frame edge
+            human.parts_coords[part][0] = Math.max(0, Math.min(mapHeight - 1, Math.round(y / stride)));
+            human.parts_coords[part][1] = Math.max(0, Math.min(mapWidth - 1, Math.round(x / stride)));
+        }
+
+        int assignedCount()
+        {
+            int count = 0;
+            for (int part = 0; part < PartCount; part++) {
+                if (human.coords_index_assigned[part]) {
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+}
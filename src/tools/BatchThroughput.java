@@ -0,0 +1,54 @@
+package tools;
+
+import logic.PoseDetector;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// compares per-frame throughput of batched inference against batches of one
+// usage: BatchThroughput [frames] [batch sizes, e.g. 1,2,4,8] [width] [height]
+public class BatchThroughput
+{
+    public static void main(String[] args)
+    {
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+
+        int frameCount = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        String[] batchSizes = (args.length > 1 ? args[1] : "1,2,4,8").split(",");
+        int width = args.length > 2 ? Integer.parseInt(args[2]) : 512;
+        int height = args.length > 3 ? Integer.parseInt(args[3]) : 288;
+
+        // deterministic noise frames, the network cost doesn't depend on the content
+        Random random = new Random(42);
+        byte[] pixels = new byte[width * height * 3];
+        List<Mat> frames = new ArrayList<Mat>();
+        for (int i = 0; i < frameCount; i++) {
+            random.nextBytes(pixels);
+            Mat frame = new Mat(height, width, CvType.CV_8UC3);
+            frame.put(0, 0, pixels);
+            frames.add(frame);
+        }
+
+        PoseDetector detector = new PoseDetector("BGR", width, height);
+        double baseline = 0;
+        for (String size : batchSizes) {
+            int batchSize = Integer.parseInt(size.trim());
+            detector.setBatchSize(batchSize);
+            // warm-up run, the first batch of a new shape pays for kernel setup
+            detector.recognizePoses(frames.subList(0, Math.min(batchSize, frames.size())));
+
+            long start = System.nanoTime();
+            detector.recognizePoses(frames);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            double fps = frames.size() / seconds;
+            if (baseline == 0) {
+                baseline = fps;
+            }
+            System.out.println(String.format("batch %3d: %8.2f fps (%.2fx of batch %s)", batchSize, fps, fps / baseline, batchSizes[0].trim()));
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package tools;
+
+import logic.kernels.Kernels;
+import logic.kernels.PoseKernels;
+import logic.kernels.ScalarKernels;
+
+import java.util.Arrays;
+import java.util.Random;
+
+// compares the selected kernels bit for bit against the scalar ones on random input, including the ties, -0.0 and
+// NaN values where a plain max() would differ; exits with 1 on the first mismatch
+// run with --add-modules jdk.incubator.vector and src-jdk16 compiled in to check the vector kernels
+// usage: KernelCheck [rounds]
+public class KernelCheck
+{
+    private static final Random random = new Random(7);
+
+    public static void main(String[] args)
+    {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        PoseKernels expected = new ScalarKernels();
+        PoseKernels actual = Kernels.Selected;
+        System.out.println("checking " + actual.getClass().getSimpleName() + " against " + expected.getClass().getSimpleName());
+
+        int[][] channelOrders = {{0, 1, 2}, {2, 1, 0}};
+        for (int round = 0; round < rounds; round++) {
+            // odd sizes so every kernel also runs its scalar tail
+            int width = 5 + random.nextInt(120);
+            int pixelCount = width * (1 + random.nextInt(8));
+            int[] channels = channelOrders[round % 2];
+
+            int[] pixels = new int[pixelCount];
+            for (int i = 0; i < pixelCount; i++) {
+                pixels[i] = random.nextInt();
+            }
+            float[] a = new float[pixelCount * 3];
+            float[] b = new float[pixelCount * 3];
+            expected.unpackPixels(pixels, pixelCount, channels, a);
+            actual.unpackPixels(pixels, pixelCount, channels, b);
+            check("unpackPixels", a, b);
+
+            byte[] bytes = new byte[pixelCount * 3];
+            random.nextBytes(bytes);
+            expected.unpackBytes(bytes, bytes.length, channels, a);
+            actual.unpackBytes(bytes, bytes.length, channels, b);
+            check("unpackBytes", a, b);
+
+            float[] plane = heatmapRow(width * 4);
+            float[] rowsA = new float[plane.length];
+            float[] rowsB = new float[plane.length];
+            for (int row = 0; row < 4; row++) {
+                expected.windowMax(plane, row * width, 2, width, 2, 2, width, rowsA);
+                actual.windowMax(plane, row * width, 2, width, 2, 2, width, rowsB);
+            }
+            check("windowMax", rowsA, rowsB);
+
+            float[] maxA = new float[width];
+            float[] maxB = new float[width];
+            for (int row = 0; row < 4; row++) {
+                expected.maxInto(maxA, rowsA, row * width, 2, width);
+                actual.maxInto(maxB, rowsA, row * width, 2, width);
+            }
+            check("maxInto", maxA, maxB);
+
+            int[] peaksA = new int[width];
+            int[] peaksB = new int[width];
+            int countA = expected.collectPeaks(maxA, plane, 0, 2, width, 0.15f, round, peaksA, 0);
+            int countB = actual.collectPeaks(maxA, plane, 0, 2, width, 0.15f, round, peaksB, 0);
+            if (countA != countB || !Arrays.equals(peaksA, peaksB)) {
+                fail("collectPeaks", Arrays.toString(Arrays.copyOf(peaksA, countA)), Arrays.toString(Arrays.copyOf(peaksB, countB)));
+            }
+
+            int samples = 1 + random.nextInt(20);
+            float[] x = heatmapRow(samples);
+            float[] y = heatmapRow(samples);
+            float vx = random.nextFloat() * 2 - 1;
+            float vy = random.nextFloat() * 2 - 1;
+            float[] projectedA = new float[samples];
+            float[] projectedB = new float[samples];
+            expected.project(x, y, vy, vx, projectedA, samples);
+            actual.project(x, y, vy, vx, projectedB, samples);
+            check("project", projectedA, projectedB);
+        }
+        System.out.println(rounds + " rounds, all kernels bit-identical");
+    }
+
+    // mostly small values with repeated maxima, a few -0.0 and NaN cells
+    private static float[] heatmapRow(int length)
+    {
+        float[] values = new float[length];
+        for (int i = 0; i < length; i++) {
+            int kind = random.nextInt(20);
+            values[i] = kind == 0 ? -0.0f : kind == 1 ? Float.NaN : kind < 5 ? 0.5f : random.nextFloat() - 0.2f;
+        }
+        return values;
+    }
+
+    private static void check(String kernel, float[] expected, float[] actual)
+    {
+        for (int i = 0; i < expected.length; i++) {
+            if (Float.floatToRawIntBits(expected[i]) != Float.floatToRawIntBits(actual[i])) {
+                fail(kernel, "[" + i + "] " + expected[i], "[" + i + "] " + actual[i]);
+            }
+        }
+    }
+
+    private static void fail(String kernel, String expected, String actual)
+    {
+        System.err.println(kernel + " differs: expected " + expected + ", got " + actual);
+        System.exit(1);
+    }
+}
@@ -0,0 +1,72 @@
+package tools;
+
+import logic.PoseDetector;
+import logic.model.ModelDescriptor;
+import logic.model.ModelRegistry;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// runs every registered model (or the named ones) at its default resolution on this CPU and records the fps in the
+// registry's fps file, so the variant to deploy can be picked by the budget of the machine
+// usage: ModelBenchmark [frames] [model name ...]
+public class ModelBenchmark
+{
+    public static void main(String[] args) throws IOException
+    {
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+
+        int frameCount = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+        ModelRegistry registry = ModelRegistry.load();
+        List<ModelDescriptor> models = new ArrayList<ModelDescriptor>();
+        if (args.length > 1) {
+            for (int i = 1; i < args.length; i++) {
+                models.add(registry.get(args[i]));
+            }
+        } else {
+            models.addAll(registry.all());
+        }
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (ModelDescriptor model : models) {
+            if (!Files.isRegularFile(model.getFile())) {
+                System.out.println(String.format("%-16s skipped, %s doesn't exist", model.getName(), model.getFile()));
+                continue;
+            }
+            int width = model.getDefaultWidth();
+            int height = model.getDefaultHeight();
+            // deterministic noise frames, the network cost doesn't depend on the content
+            Random random = new Random(42);
+            byte[] pixels = new byte[width * height * 3];
+            Mat[] frames = new Mat[Math.min(frameCount, 8)];
+            for (int i = 0; i < frames.length; i++) {
+                random.nextBytes(pixels);
+                frames[i] = new Mat(height, width, CvType.CV_8UC3);
+                frames[i].put(0, 0, pixels);
+            }
+
+            PoseDetector detector = new PoseDetector(model);
+            detector.warmUp(3);
+            long start = System.nanoTime();
+            for (int i = 0; i < frameCount; i++) {
+                detector.setImage(frames[i % frames.length]);
+                detector.recognizePoses();
+            }
+            double fps = frameCount / ((System.nanoTime() - start) / 1e9);
+            detector.close();
+
+            double previous = registry.getMeasuredFps(model.getName());
+            registry.recordFps(model.getName(), fps, width + "x" + height + ", " + cores + " cores, " + LocalDate.now());
+            System.out.println(String.format("%-16s %-15s %4dx%-4d %8.2f fps%s", model.getName(), model.getDataType(),
+                    width, height, fps, Double.isNaN(previous) ? "" : String.format(" (was %.2f)", previous)));
+        }
+        System.out.println("recorded in " + ModelRegistry.FpsFile);
+    }
+}
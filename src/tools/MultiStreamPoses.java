@@ -0,0 +1,55 @@
+package tools;
+
+import logic.Camera;
+import logic.PoseDetector;
+import logic.PoseDetectorPool;
+import logic.streams.StreamManager;
+import org.opencv.core.Core;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+// runs pose detection on several feeds at once and prints per-stream fps and drops every few seconds; a source that
+// is a number opens that camera device, anything else is opened as a video file or stream URL; files play at their
+// frame rate and start over at their end, so they behave like cameras
+// usage: MultiStreamPoses <detectors> <source> [source ...]
+public class MultiStreamPoses
+{
+    public static void main(String[] args) throws InterruptedException
+    {
+        if (args.length < 2) {
+            System.err.println("usage: MultiStreamPoses <detectors> <source> [source ...]");
+            System.exit(1);
+        }
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+
+        int detectors = Integer.parseInt(args[0]);
+        int width = 432;
+        int height = 240;
+        List<Camera> cameras = new ArrayList<Camera>();
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].matches("\\d+")) {
+                cameras.add(new Camera(640, 480, Integer.parseInt(args[i])));
+            } else {
+                cameras.add(new Camera(args[i]));
+            }
+        }
+
+        // one TF thread per detector, the detectors together use as many cores as there are detectors
+        PoseDetectorPool pool = new PoseDetectorPool(Paths.get(PoseDetector.MODEL_FILE), "BGR", width, height, detectors, 1, 1);
+        StreamManager manager = new StreamManager(cameras, pool, width, height, null);
+        manager.setLoopFiles(true);
+        manager.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            manager.stop();
+            for (Camera camera : cameras) {
+                camera.stop();
+            }
+        }));
+        while (true) {
+            Thread.sleep(5000);
+            System.out.print(manager.report());
+        }
+    }
+}
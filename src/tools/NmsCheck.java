@@ -0,0 +1,132 @@
+package tools;
+
+import logic.HeatmapNms;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+// compares HeatmapNms against the original 5x5 window loop on random tensors and on edge-heavy ones (peaks and
+// plateaus on the borders, ties, values at the threshold, -0.0 and NaN); the loop leaves no peaks in the first
+// (filterSize - 1) / 2 rows and columns and clips the window at the bottom and right edges, HeatmapNms has to agree
+// on every cell; exits with 1 on the first mismatch
+// usage: NmsCheck [rounds]
+public class NmsCheck
+{
+    private static final int ChannelCount = 57;
+    private static final int PartCount = 18;
+    private static final float Threshold = 0.15f;
+    private static final Random random = new Random(11);
+
+    public static void main(String[] args)
+    {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int[] filterSizes = {5, 3, 7};
+        for (int round = 0; round < rounds; round++) {
+            // odd and tiny maps included, the window covers the whole map on the smallest ones
+            int mapWidth = 1 + random.nextInt(70);
+            int mapHeight = 1 + random.nextInt(40);
+            int filterSize = filterSizes[round % filterSizes.length];
+            boolean edgeHeavy = round % 2 == 1;
+            float[] tensor = edgeHeavy ? edgeHeavyTensor(mapWidth, mapHeight) : randomTensor(mapWidth, mapHeight);
+
+            HeatmapNms nms = new HeatmapNms(mapWidth, mapHeight, ChannelCount, PartCount, filterSize, Threshold);
+            nms.loadHeatmaps(FloatBuffer.wrap(tensor), 0);
+            int[] peaks = new int[nms.capacity()];
+            for (int part = 0; part < PartCount; part++) {
+                int[] expected = legacyPeaks(tensor, mapWidth, mapHeight, part, filterSize);
+                int count = nms.findPeaks(part, peaks);
+                int[] actual = Arrays.copyOf(peaks, count);
+                if (!Arrays.equals(expected, actual)) {
+                    System.err.println(String.format("round %d, %dx%d map, filter %d, part %d (%s): expected %s, got %s",
+                            round, mapWidth, mapHeight, filterSize, part, edgeHeavy ? "edge-heavy" : "random",
+                            describe(expected), describe(actual)));
+                    System.exit(1);
+                }
+            }
+        }
+        System.out.println(rounds + " rounds, HeatmapNms matches the original window loop");
+    }
+
+    // the original loop from PoseDetector.recognizePoses(), packed the way HeatmapNms reports peaks
+    private static int[] legacyPeaks(float[] tensor, int mapWidth, int mapHeight, int part, int filterSize)
+    {
+        int[] peaks = new int[mapWidth * mapHeight];
+        int count = 0;
+        for (int j = 0; j < mapHeight; j++) {
+            for (int k = 0; k < mapWidth; k++) {
+                float max_value = 0;
+                for (int dj = -(filterSize - 1) / 2; dj < (filterSize + 1) / 2; dj++) {
+                    if ((j + dj) >= mapHeight || (j + dj) < 0) {
+                        break;
+                    }
+                    for (int dk = -(filterSize - 1) / 2; dk < (filterSize + 1) / 2; dk++) {
+                        if ((k + dk) >= mapWidth || (k + dk) < 0) {
+                            break;
+                        }
+                        float value = tensor[ChannelCount * mapWidth * (j + dj) + ChannelCount * (k + dk) + part];
+                        if (value > max_value) {
+                            max_value = value;
+                        }
+                    }
+                }
+                if (max_value > Threshold) {
+                    if (max_value == tensor[ChannelCount * mapWidth * j + ChannelCount * k + part]) {
+                        peaks[count++] = HeatmapNms.pack(j, k);
+                    }
+                }
+            }
+        }
+        return Arrays.copyOf(peaks, count);
+    }
+
+    private static float[] randomTensor(int mapWidth, int mapHeight)
+    {
+        float[] tensor = new float[mapWidth * mapHeight * ChannelCount];
+        for (int i = 0; i < tensor.length; i++) {
+            tensor[i] = random.nextFloat() * 0.6f - 0.1f;
+        }
+        return tensor;
+    }
+
+    // mostly background with strong values on the first, second, last and second to last rows and columns, repeated
+    // maxima so ties decide, and the threshold itself
+    private static float[] edgeHeavyTensor(int mapWidth, int mapHeight)
+    {
+        float[] tensor = new float[mapWidth * mapHeight * ChannelCount];
+        for (int row = 0; row < mapHeight; row++) {
+            for (int column = 0; column < mapWidth; column++) {
+                boolean edge = row < 3 || column < 3 || row >= mapHeight - 3 || column >= mapWidth - 3;
+                for (int part = 0; part < PartCount; part++) {
+                    int kind = random.nextInt(20);
+                    float value;
+                    if (kind == 0) {
+                        value = -0.0f;
+                    } else if (kind == 1) {
+                        value = Float.NaN;
+                    } else if (kind < 4) {
+                        value = Threshold;
+                    } else if (kind < 8) {
+                        value = 0.5f;
+                    } else {
+                        value = edge ? 0.3f + random.nextFloat() * 0.7f : random.nextFloat() * 0.1f;
+                    }
+                    tensor[(row * mapWidth + column) * ChannelCount + part] = value;
+                }
+            }
+        }
+        return tensor;
+    }
+
+    private static String describe(int[] peaks)
+    {
+        StringBuilder text = new StringBuilder("[");
+        for (int i = 0; i < peaks.length; i++) {
+            if (i > 0) {
+                text.append(", ");
+            }
+            text.append('(').append(HeatmapNms.row(peaks[i])).append(',').append(HeatmapNms.column(peaks[i])).append(')');
+        }
+        return text.append(']').toString();
+    }
+}
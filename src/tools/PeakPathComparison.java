@@ -0,0 +1,85 @@
+package tools;
+
+import logic.Human;
+import logic.PoseDetector;
+import logic.PoseJson;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+import org.opencv.videoio.VideoCapture;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// runs the same frames through the Java NMS path and the in-graph peak extraction, reports the time of both and
+// every frame where they disagree; without a video, noise frames only compare the timing
+// usage: PeakPathComparison [video file] [frames] [width] [height]
+public class PeakPathComparison
+{
+    public static void main(String[] args)
+    {
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+
+        int frameCount = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        int width = args.length > 2 ? Integer.parseInt(args[2]) : 512;
+        int height = args.length > 3 ? Integer.parseInt(args[3]) : 288;
+
+        List<Mat> frames = new ArrayList<Mat>();
+        if (args.length > 0) {
+            VideoCapture video = new VideoCapture(args[0]);
+            Mat decoded = new Mat();
+            while (frames.size() < frameCount && video.read(decoded)) {
+                Mat frame = new Mat();
+                Imgproc.resize(decoded, frame, new Size(width, height));
+                frames.add(frame);
+            }
+            video.release();
+        } else {
+            Random random = new Random(42);
+            byte[] pixels = new byte[width * height * 3];
+            for (int i = 0; i < frameCount; i++) {
+                random.nextBytes(pixels);
+                Mat frame = new Mat(height, width, CvType.CV_8UC3);
+                frame.put(0, 0, pixels);
+                frames.add(frame);
+            }
+        }
+
+        PoseDetector detector = new PoseDetector("BGR", width, height);
+        List<String> javaResults = new ArrayList<String>();
+        List<String> graphResults = new ArrayList<String>();
+        double javaSeconds = run(detector, frames, false, javaResults);
+        double graphSeconds = run(detector, frames, true, graphResults);
+        detector.close();
+
+        int mismatches = 0;
+        for (int i = 0; i < frames.size(); i++) {
+            if (!javaResults.get(i).equals(graphResults.get(i))) {
+                mismatches++;
+                System.out.println("java:  " + javaResults.get(i));
+                System.out.println("graph: " + graphResults.get(i));
+            }
+        }
+        System.out.println(String.format("%d frames, java NMS %.2f fps, in-graph peaks %.2f fps, %d mismatching frames",
+                frames.size(), frames.size() / javaSeconds, frames.size() / graphSeconds, mismatches));
+    }
+
+    private static double run(PoseDetector detector, List<Mat> frames, boolean inGraphPeaks, List<String> results)
+    {
+        detector.setInGraphPeaks(inGraphPeaks);
+        detector.warmUp(1);
+        StringBuilder json = new StringBuilder();
+        long start = System.nanoTime();
+        for (int i = 0; i < frames.size(); i++) {
+            detector.setImage(frames.get(i));
+            List<Human> humans = detector.recognizePoses();
+            json.setLength(0);
+            PoseJson.append(json, i, humans);
+            results.add(json.toString());
+        }
+        return (System.nanoTime() - start) / 1e9;
+    }
+}
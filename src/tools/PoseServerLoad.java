@@ -0,0 +1,84 @@
+package tools;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// posts the same encoded image from several clients at once and reports requests per second and how many were
+// rejected; one client measures the one-at-a-time rate to compare the batched server against
+// usage: PoseServerLoad <image file> [clients] [requests per client] [url]
+public class PoseServerLoad
+{
+    public static void main(String[] args) throws Exception
+    {
+        if (args.length < 1) {
+            System.err.println("usage: PoseServerLoad <image file> [clients] [requests per client] [url]");
+            System.exit(1);
+        }
+        byte[] image = Files.readAllBytes(Paths.get(args[0]));
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        int requests = args.length > 2 ? Integer.parseInt(args[2]) : 50;
+        URL url = new URL(args.length > 3 ? args[3] : "http://localhost:8765/poses");
+
+        AtomicInteger ok = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        AtomicLong latencySum = new AtomicLong();
+        Thread[] threads = new Thread[clients];
+        long start = System.nanoTime();
+        for (int c = 0; c < clients; c++) {
+            threads[c] = new Thread(() -> {
+                for (int i = 0; i < requests; i++) {
+                    long sent = System.nanoTime();
+                    try {
+                        if (post(url, image) == 200) {
+                            ok.incrementAndGet();
+                            latencySum.addAndGet(System.nanoTime() - sent);
+                        } else {
+                            rejected.incrementAndGet();
+                        }
+                    } catch (IOException e) {
+                        System.err.println("Request failed: " + e);
+                        rejected.incrementAndGet();
+                    }
+                }
+            });
+            threads[c].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.println(String.format("%d clients: %.2f requests/s, %d ok (%.1f ms mean), %d rejected",
+                clients, ok.get() / seconds, ok.get(), ok.get() == 0 ? 0 : latencySum.get() / 1e6 / ok.get(), rejected.get()));
+    }
+
+    private static int post(URL url, byte[] image) throws IOException
+    {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setFixedLengthStreamingMode(image.length);
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(image);
+        }
+        int status = connection.getResponseCode();
+        InputStream body = status == 200 ? connection.getInputStream() : connection.getErrorStream();
+        if (body != null) {
+            ByteArrayOutputStream ignored = new ByteArrayOutputStream();
+            byte[] chunk = new byte[4096];
+            int read;
+            while ((read = body.read(chunk)) > 0) {
+                ignored.write(chunk, 0, read);
+            }
+            body.close();
+        }
+        return status;
+    }
+}
@@ -0,0 +1,36 @@
+package tools;
+
+import logic.PoseDetector;
+import logic.server.PoseServer;
+import org.opencv.core.Core;
+
+import java.io.IOException;
+
+// starts the local pose server, see logic.server.PoseServer
+// usage: PoseServerMain [port] [max batch] [window ms] [deadline ms] [width] [height]
+public class PoseServerMain
+{
+    public static void main(String[] args) throws IOException
+    {
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8765;
+        int maxBatch = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        long windowMillis = args.length > 2 ? Long.parseLong(args[2]) : 5;
+        long deadlineMillis = args.length > 3 ? Long.parseLong(args[3]) : 500;
+        int width = args.length > 4 ? Integer.parseInt(args[4]) : 432;
+        int height = args.length > 5 ? Integer.parseInt(args[5]) : 240;
+
+        PoseDetector detector = new PoseDetector("BGR", width, height);
+        detector.warmUp(1);
+        PoseServer server = new PoseServer(detector, width, height, port, maxBatch, windowMillis, deadlineMillis,
+                Math.max(4, maxBatch * 2), maxBatch * 8);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop();
+            detector.close();
+        }));
+        server.start();
+        System.out.println(String.format("serving POST http://localhost:%d/poses (batch %d, window %d ms, deadline %d ms, %dx%d)",
+                server.getPort(), maxBatch, windowMillis, deadlineMillis, width, height));
+    }
+}
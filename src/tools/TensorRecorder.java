@@ -0,0 +1,64 @@
+package tools;
+
+import logic.Human;
+import logic.PoseDetector;
+import logic.archive.PoseArchiveWriter;
+import logic.archive.TensorRecordingWriter;
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+import org.opencv.videoio.VideoCapture;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.List;
+
+// runs a video through the detector one frame at a time and records the network output of every frame for
+// TensorReplay, optionally with the humans found as the golden pose archive to diff replays against
+// usage: TensorRecorder <video file> <output .tensors> [golden .pose] [width] [height]
+public class TensorRecorder
+{
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length < 2) {
+            System.err.println("usage: TensorRecorder <video file> <output .tensors> [golden .pose] [width] [height]");
+            System.exit(1);
+        }
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+
+        int width = args.length > 3 ? Integer.parseInt(args[3]) : 512;
+        int height = args.length > 4 ? Integer.parseInt(args[4]) : 288;
+
+        VideoCapture video = new VideoCapture(args[0]);
+        if (!video.isOpened()) {
+            throw new IOException("Failed to open the video file");
+        }
+        PoseDetector detector = new PoseDetector("BGR", width, height);
+        PoseArchiveWriter golden = args.length > 2 ? new PoseArchiveWriter(Paths.get(args[2]), detector.getMapWidth(), detector.getMapHeight()) : null;
+        try (TensorRecordingWriter recorder = new TensorRecordingWriter(Paths.get(args[1]), detector.getMapWidth(),
+                detector.getMapHeight(), detector.getOutputChannels())) {
+            detector.setTensorRecorder(recorder);
+            Mat raw = new Mat();
+            Mat frame = new Mat();
+            Size size = new Size(width, height);
+            while (video.read(raw) && !raw.empty()) {
+                Imgproc.resize(raw, frame, size);
+                detector.setImage(frame);
+                List<Human> humans = detector.recognizePoses();
+                if (golden != null) {
+                    golden.append(humans);
+                }
+            }
+            detector.setTensorRecorder(null);
+            System.out.println(String.format("recorded %d frames of %dx%dx%d", recorder.frameCount(), detector.getMapWidth(),
+                    detector.getMapHeight(), detector.getOutputChannels()));
+        } finally {
+            if (golden != null) {
+                golden.close();
+            }
+            video.release();
+            detector.close();
+        }
+    }
+}
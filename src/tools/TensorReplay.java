@@ -0,0 +1,120 @@
+package tools;
+
+import logic.Human;
+import logic.PosePostProcessor;
+import logic.archive.PoseArchiveReader;
+import logic.archive.TensorRecordingReader;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.List;
+
+// Feeds a tensor recording straight into the post-processing, no TensorFlow, OpenCV or camera involved. The first
+// pass diffs the humans of every frame against the golden pose archive when one is given (exit code 1 on any
+// difference), the timed passes after it report the post-processing throughput.
+// usage: TensorReplay <recording .tensors> [golden .pose] [timed passes]
+public class TensorReplay
+{
+    public static void main(String[] args) throws IOException
+    {
+        int passes = 5;
+        try {
+            if (args.length > 2) {
+                passes = Integer.parseInt(args[2]);
+            }
+        } catch (NumberFormatException e) {
+            passes = 0;
+        }
+        if (args.length < 1 || passes < 1) {
+            System.err.println("usage: TensorReplay <recording .tensors> [golden .pose] [timed passes, at least 1]");
+            System.exit(1);
+        }
+
+        try (TensorRecordingReader recording = new TensorRecordingReader(Paths.get(args[0]))) {
+            if (recording.channels() != PosePostProcessor.ChannelCount) {
+                throw new IOException("Recording has " + recording.channels() + " channels per cell, the post-processing expects "
+                        + PosePostProcessor.ChannelCount);
+            }
+            PosePostProcessor postProcessor = new PosePostProcessor(recording.mapWidth(), recording.mapHeight());
+
+            long differing = 0;
+            if (args.length > 1) {
+                differing = diff(recording, postProcessor, args[1]);
+            }
+            if (recording.frameCount() == 0) {
+                System.out.println("the recording has no frames, nothing to time");
+                System.exit(differing > 0 ? 1 : 0);
+            }
+
+            // one untimed pass warms the JIT up when there was no diff pass
+            int pass = args.length > 1 ? 0 : -1;
+            long frames = 0;
+            long humans = 0;
+            long start = 0;
+            for (; pass < passes; pass++) {
+                if (pass == 0) {
+                    start = System.nanoTime();
+                }
+                recording.seek(0);
+                do {
+                    List<Human> found = postProcessor.process(recording.tensor(), recording.offset());
+                    if (pass >= 0) {
+                        frames++;
+                        humans += found.size();
+                    }
+                } while (recording.next());
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.println(String.format("%d frames of %dx%d in %d passes: %.1f frames/s post-processing, %.1f us per frame, %.2f humans per frame",
+                    frames, recording.mapWidth(), recording.mapHeight(), passes, frames / seconds, seconds * 1e6 / frames,
+                    (double) humans / frames));
+            if (differing > 0) {
+                System.exit(1);
+            }
+        }
+    }
+
+    private static boolean matches(List<Human> found, PoseArchiveReader golden)
+    {
+        if (found.size() != golden.humanCount()) {
+            return false;
+        }
+        for (int h = 0; h < found.size(); h++) {
+            Human human = found.get(h);
+            for (int part = 0; part < Human.parts.size(); part++) {
+                boolean assigned = human.coords_index_assigned[part];
+                if (assigned != golden.isAssigned(h, part) || assigned && (human.parts_coords[part][0] != golden.row(h, part)
+                        || human.parts_coords[part][1] != golden.column(h, part))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static long diff(TensorRecordingReader recording, PosePostProcessor postProcessor, String goldenFile) throws IOException
+    {
+        try (PoseArchiveReader golden = new PoseArchiveReader(Paths.get(goldenFile))) {
+            // frames only one of the two files has count as differing
+            long differing = Math.abs(golden.frameCount() - recording.frameCount());
+            if (differing > 0) {
+                System.out.println("golden file has " + golden.frameCount() + " frames, the recording " + recording.frameCount());
+            }
+            long frames = Math.min(golden.frameCount(), recording.frameCount());
+            for (long frame = 0; frame < frames; frame++) {
+                recording.seek(frame);
+                golden.seek(frame);
+                List<Human> found = postProcessor.process(recording.tensor(), recording.offset());
+                if (!matches(found, golden)) {
+                    if (differing < 10) {
+                        System.out.println("frame " + frame + ": " + found.size() + " humans, golden " + golden.humanCount());
+                    }
+                    differing++;
+                }
+            }
+            System.out.println(String.format("%d of %d frames differ from %s", differing,
+                    Math.max(golden.frameCount(), recording.frameCount()), goldenFile));
+            return differing;
+        }
+    }
+}
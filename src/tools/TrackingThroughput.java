@@ -0,0 +1,52 @@
+package tools;
+
+import logic.PoseDetector;
+import logic.tracking.PoseTracker;
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+import org.opencv.videoio.VideoCapture;
+
+// runs a video through the keyframe tracker and reports throughput next to the share of frames that skipped the network
+// usage: TrackingThroughput <video file> [keyframe interval] [Interval|Confidence] [min confidence] [width] [height]
+public class TrackingThroughput
+{
+    public static void main(String[] args)
+    {
+        if (args.length < 1) {
+            System.err.println("usage: TrackingThroughput <video file> [keyframe interval] [Interval|Confidence] [min confidence] [width] [height]");
+            System.exit(1);
+        }
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+
+        int interval = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        PoseTracker.Policy policy = args.length > 2 ? PoseTracker.Policy.valueOf(args[2]) : PoseTracker.Policy.Confidence;
+        float minConfidence = args.length > 3 ? Float.parseFloat(args[3]) : 0.7f;
+        int width = args.length > 4 ? Integer.parseInt(args[4]) : 512;
+        int height = args.length > 5 ? Integer.parseInt(args[5]) : 288;
+
+        PoseDetector detector = new PoseDetector("BGR", width, height);
+        PoseTracker tracker = new PoseTracker(detector);
+        tracker.setPolicy(policy);
+        tracker.setInterval(interval);
+        tracker.setMinConfidence(minConfidence);
+
+        VideoCapture video = new VideoCapture(args[0]);
+        Mat decoded = new Mat();
+        Mat frame = new Mat();
+        Size size = new Size(width, height);
+        long start = System.nanoTime();
+        while (video.read(decoded)) {
+            Imgproc.resize(decoded, frame, size);
+            tracker.process(frame);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        video.release();
+        detector.close();
+
+        System.out.println(String.format("%d frames, %.2f fps, %d inferred, %.1f%% skipped inference (%s, interval %d)",
+                tracker.getFrameCount(), tracker.getFrameCount() / seconds, tracker.getInferredFrameCount(),
+                tracker.getSkippedFraction() * 100, policy, interval));
+    }
+}
@@ -0,0 +1,158 @@
+package tools;
+
+import logic.Human;
+import logic.PoseDetectorPool;
+import logic.PoseJson;
+import logic.archive.PoseArchiveWriter;
+import logic.model.ModelDescriptor;
+import logic.model.ModelRegistry;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+import org.opencv.videoio.VideoCapture;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+
+// Headless pose extraction for recorded videos, no JavaFX involved. One thread decodes, the frames fan out to a pool
+// of detectors and the results are written in frame order, as JSON lines or as a binary pose archive for .pose files.
+// The model is one of ModelRegistry's, the thin model by default, at its default size unless width and height are given.
+// usage: VideoPoseExtractor <video file> <output .jsonl|.pose> [workers] [width] [height] [TF threads per worker] [model]
+public class VideoPoseExtractor
+{
+    private static final Task EndOfStream = new Task(-1, null, null);
+
+    private final VideoCapture video;
+    private final PoseDetectorPool pool;
+    private final int width;
+    private final int height;
+    private final BlockingQueue<Task> pending;
+    private final BlockingQueue<Mat> freeFrames;
+
+    public static void main(String[] args) throws IOException, InterruptedException
+    {
+        if (args.length < 2) {
+            System.err.println("usage: VideoPoseExtractor <video file> <output .jsonl|.pose> [workers] [width] [height] [TF threads per worker] [model]");
+            System.exit(1);
+        }
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+
+        ModelDescriptor model = args.length > 6 ? ModelRegistry.load().get(args[6]) : ModelRegistry.Thin;
+        int workers = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors() / 2;
+        int width = args.length > 3 ? Integer.parseInt(args[3]) : model.getDefaultWidth();
+        int height = args.length > 4 ? Integer.parseInt(args[4]) : model.getDefaultHeight();
+        int threads = args.length > 5 ? Integer.parseInt(args[5]) : 2;
+
+        PoseDetectorPool pool = new PoseDetectorPool(model, width, height, Math.max(1, workers), threads, 1);
+        VideoPoseExtractor extractor = new VideoPoseExtractor(args[0], pool, width, height);
+        try {
+            if (args[1].endsWith(".pose")) {
+                try (PoseArchiveWriter archive = new PoseArchiveWriter(Paths.get(args[1]), width / model.getStride(),
+                        height / model.getStride())) {
+                    extractor.run((number, humans) -> archive.append(humans));
+                }
+            } else {
+                try (BufferedWriter writer = Files.newBufferedWriter(Paths.get(args[1]), StandardCharsets.UTF_8)) {
+                    StringBuilder line = new StringBuilder();
+                    extractor.run((number, humans) -> {
+                        line.setLength(0);
+                        PoseJson.append(line, number, humans);
+                        writer.append(line).append('\n');
+                    });
+                }
+            }
+        } finally {
+            pool.close();
+        }
+    }
+
+    public VideoPoseExtractor(String videoFile, PoseDetectorPool pool, int width, int height)
+    {
+        this.video = new VideoCapture(videoFile);
+        this.pool = pool;
+        this.width = width;
+        this.height = height;
+        // enough frames in flight to keep every worker busy while the writer waits for the oldest one
+        int inFlight = pool.size() * 2;
+        this.pending = new ArrayBlockingQueue<Task>(inFlight);
+        this.freeFrames = new ArrayBlockingQueue<Mat>(inFlight + 1);
+        for (int i = 0; i < inFlight + 1; i++) {
+            freeFrames.add(new Mat(height, width, CvType.CV_8UC3));
+        }
+    }
+
+    public void run(FrameSink out) throws IOException, InterruptedException
+    {
+        if (!video.isOpened()) {
+            throw new IOException("Failed to open the video file");
+        }
+
+        long start = System.nanoTime();
+        Thread decoder = new Thread(this::decode, "video-decoder");
+        decoder.setDaemon(true);
+        decoder.start();
+
+        long frames = 0;
+        for (Task task = pending.take(); task != EndOfStream; task = pending.take()) {
+            List<Human> humans = task.result.join();
+            freeFrames.put(task.frame);
+            out.write(task.number, humans);
+            frames++;
+        }
+        decoder.join();
+        video.release();
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.println(String.format("%d frames in %.1f s, %.2f fps", frames, seconds, frames / seconds));
+    }
+
+    private void decode()
+    {
+        Mat raw = new Mat();
+        Size size = new Size(width, height);
+        long number = 0;
+        try {
+            while (video.read(raw) && !raw.empty()) {
+                Mat frame = freeFrames.take();
+                Imgproc.resize(raw, frame, size);
+                pending.put(new Task(number++, frame, pool.submit(frame)));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            try {
+                pending.put(EndOfStream);
+            } catch (InterruptedException e) {
+                System.err.println("Interrupted before the end of the video was signalled: " + e);
+            }
+        }
+    }
+
+    public interface FrameSink
+    {
+        void write(long number, List<Human> humans) throws IOException;
+    }
+
+    private static class Task
+    {
+        final long number;
+        final Mat frame;
+        final CompletableFuture<List<Human>> result;
+
+        Task(long number, Mat frame, CompletableFuture<List<Human>> result)
+        {
+            this.number = number;
+            this.frame = frame;
+            this.result = result;
+        }
+    }
+}